@@ -17,16 +17,23 @@ package de.terrarier.netlistening;
 
 import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.DataContainer;
+import de.terrarier.netlistening.api.PreparedPacket;
 import de.terrarier.netlistening.api.event.Listener;
 import de.terrarier.netlistening.api.event.ListenerType;
 import de.terrarier.netlistening.api.serialization.SerializationProvider;
+import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelOption;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * @author Terrarier2111
@@ -37,6 +44,8 @@ public interface Application {
     String DECODER = "nl_decoder";
     String ENCODER = "nl_encoder";
     String TIMEOUT_HANDLER = "nl_timeout_handler";
+    String FRAME_PREPENDER = "nl_frame_prepender";
+    String FLUSH_CONSOLIDATION = "nl_flush_consolidation";
 
     /**
      * @return the encoding used to encode String which are being sent through the network.
@@ -71,11 +80,24 @@ public interface Application {
     void unregisterListener(long listenerId);
 
     /**
-     * @return a list of all connections.
+     * @return an unmodifiable view of all connections which reflects later changes.
      */
     @AssumeNotNull
     Set<Connection> getConnections();
 
+    /**
+     * Returns the sizes which are used to pre-size the buffers of outbound
+     * packets, these are estimated based on the encoded sizes of recently
+     * sent packets of the same type (including compression, encryption and
+     * any other additional data written on the wire).
+     *
+     * @return the estimated encoded sizes (in bytes) of all the packet types which
+     * were sent by this application, mapped by their data types.
+     */
+    @ApiStatus.Experimental
+    @AssumeNotNull
+    Map<List<DataType<?>>, Integer> getEstimatedPacketSizes();
+
     /**
      * Stops the application and closes all connections.
      */
@@ -88,6 +110,23 @@ public interface Application {
      */
     void sendData(@NotNull DataContainer data);
 
+    /**
+     * Sends multiple packets to all connections, the packets are
+     * flushed at once after all of them were written.
+     *
+     * @param data the data which gets sent.
+     */
+    void sendBatch(@NotNull Collection<DataContainer> data);
+
+    /**
+     * Sends a prepared packet to all connections.
+     *
+     * @param packet the packet which gets sent.
+     * @throws IllegalArgumentException if the packet wasn't filled completely.
+     */
+    @ApiStatus.Experimental
+    void sendData(@NotNull PreparedPacket packet);
+
     /**
      * Sends data to all connections.
      *
@@ -198,6 +237,71 @@ public interface Application {
         @AssumeNotNull
         public abstract B serialization(@NotNull SerializationProvider serializationProvider);
 
+        /**
+         * Sets the allocator which should be used to allocate all the buffers
+         * used internally and by the channels of the application, by default
+         * the pooled allocator provided by netty is used.
+         *
+         * @param allocator the allocator which should be used to allocate buffers.
+         * @return the local reference.
+         */
+        @AssumeNotNull
+        public abstract B allocator(@NotNull ByteBufAllocator allocator);
+
+        /**
+         * Sets whether data of received packets which doesn't represent primitives
+         * (for example strings and objects) should only be decoded when it is read
+         * from the data container, so data which is never read is never deserialized.
+         * Note that such data can only be read while the packet is handled by the
+         * decode listeners, containers which are kept after that have to be decoded
+         * completely via {@link DataContainer#decodeAll()} first. Containers which
+         * are sent again are decoded completely automatically.
+         *
+         * @param enabled whether data should be decoded lazily.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public abstract B lazyDecoding(boolean enabled);
+
+        /**
+         * Enables the consolidation of flushes, so that packets which are sent within
+         * the same tick of the event loop are flushed together instead of one by one.
+         *
+         * @param explicitFlushAfterFlushes the maximum number of flushes which may get consolidated
+         *                                  before a flush is performed.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public abstract B flushConsolidation(int explicitFlushAfterFlushes);
+
+        /**
+         * Sets the number of threads which handle the I/O of the connections,
+         * if this isn't set Netty's default of twice the number of available
+         * processors is used.
+         *
+         * @param threads the number of threads handling the I/O of the connections.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public abstract B workerThreads(int threads);
+
+        /**
+         * Sets an executor which calls the decode listeners instead of the threads
+         * handling the I/O of the connections, so slow listeners don't delay the
+         * I/O of other connections. The data received from a single connection is
+         * still passed to the listeners one after another in the order it was received.
+         *
+         * @param executor the executor which should call the decode listeners,
+         *                 for example a {@link java.util.concurrent.ForkJoinPool}.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public abstract B listenerExecutor(@NotNull Executor executor);
+
         /**
          * Builds the application, sets its default values and starts it.
          *
@@ -21,11 +21,14 @@ import de.terrarier.netlistening.api.proxy.ProxyType;
 import de.terrarier.netlistening.api.serialization.SerializationProvider;
 import de.terrarier.netlistening.impl.ClientImpl;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelOption;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.Executor;
 
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositive;
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZero;
@@ -203,6 +206,60 @@ public interface Client extends Application {
             return this;
         }
 
+        /**
+         * @see Application.Builder#allocator(ByteBufAllocator)
+         */
+        @AssumeNotNull
+        @Override
+        public Builder allocator(@NotNull ByteBufAllocator allocator) {
+            impl.allocator(allocator);
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#lazyDecoding(boolean)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder lazyDecoding(boolean enabled) {
+            impl.lazyDecoding(enabled);
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#flushConsolidation(int)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder flushConsolidation(int explicitFlushAfterFlushes) {
+            impl.flushConsolidation(checkPositive(explicitFlushAfterFlushes, "explicitFlushAfterFlushes"));
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#workerThreads(int)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder workerThreads(int threads) {
+            impl.workerThreads(checkPositive(threads, "threads"));
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#listenerExecutor(Executor)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder listenerExecutor(@NotNull Executor executor) {
+            impl.listenerExecutor(executor);
+            return this;
+        }
+
         /**
          * Sets a proxy to which the client connects to in order
          * to hide its identity.
@@ -17,11 +17,14 @@ package de.terrarier.netlistening;
 
 import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.DataContainer;
+import de.terrarier.netlistening.api.PreparedPacket;
 import de.terrarier.netlistening.internal.AssumeNotNull;
 import io.netty.channel.Channel;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.net.InetSocketAddress;
+import java.util.Collection;
 
 /**
  * @author Terrarier2111
@@ -36,6 +39,23 @@ public interface Connection {
      */
     void sendData(@NotNull DataContainer data);
 
+    /**
+     * Sends multiple packets to the connection, the packets are
+     * flushed at once after all of them were written.
+     *
+     * @param data the data to be sent to the connection.
+     */
+    void sendBatch(@NotNull Collection<DataContainer> data);
+
+    /**
+     * Sends a prepared packet to the connection.
+     *
+     * @param packet the packet to be sent to the connection.
+     * @throws IllegalArgumentException if the packet wasn't filled completely.
+     */
+    @ApiStatus.Experimental
+    void sendData(@NotNull PreparedPacket packet);
+
     /**
      * Sends data to the connection.
      *
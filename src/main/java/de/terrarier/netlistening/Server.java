@@ -23,12 +23,14 @@ import de.terrarier.netlistening.api.encryption.EncryptionSettingWrapper;
 import de.terrarier.netlistening.api.serialization.SerializationProvider;
 import de.terrarier.netlistening.impl.ServerImpl;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.Executor;
 
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositive;
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZero;
@@ -148,6 +150,53 @@ public interface Server extends Application {
             return this;
         }
 
+        /**
+         * Sets whether every frame should be prefixed with its length, this
+         * allows the receiver to wait until a frame was received completely
+         * and decode it at once instead of resuming the decoding of partially
+         * received packets. The client adopts this setting during the handshake.
+         *
+         * @param enabled whether frames should be prefixed with their length.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public Builder lengthPrefixedFrames(boolean enabled) {
+            impl.lengthPrefixedFrames(enabled);
+            return this;
+        }
+
+        /**
+         * Sets the number of threads which accept incoming connections, if this
+         * isn't set the threads handling the I/O of the connections accept them.
+         *
+         * @param threads the number of threads accepting incoming connections.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public Builder bossThreads(int threads) {
+            impl.bossThreads(checkPositive(threads, "threads"));
+            return this;
+        }
+
+        /**
+         * Sets the number of server channels which get bound to the port via
+         * {@code SO_REUSEPORT}, so the kernel distributes incoming connections
+         * between them and they can be accepted by multiple threads at once.
+         * This is only supported by the epoll transport and has no effect on
+         * other transports and UDS.
+         *
+         * @param channels the number of server channels which should be bound.
+         * @return the local reference.
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        public Builder reusePort(int channels) {
+            impl.reusePort(checkPositive(channels, "channels"));
+            return this;
+        }
+
         /**
          * Sets the encoding which should be used to encode/decode strings.
          *
@@ -228,6 +277,60 @@ public interface Server extends Application {
             return this;
         }
 
+        /**
+         * @see Application.Builder#allocator(ByteBufAllocator)
+         */
+        @AssumeNotNull
+        @Override
+        public Builder allocator(@NotNull ByteBufAllocator allocator) {
+            impl.allocator(allocator);
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#lazyDecoding(boolean)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder lazyDecoding(boolean enabled) {
+            impl.lazyDecoding(enabled);
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#flushConsolidation(int)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder flushConsolidation(int explicitFlushAfterFlushes) {
+            impl.flushConsolidation(checkPositive(explicitFlushAfterFlushes, "explicitFlushAfterFlushes"));
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#workerThreads(int)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder workerThreads(int threads) {
+            impl.workerThreads(checkPositive(threads, "threads"));
+            return this;
+        }
+
+        /**
+         * @see Application.Builder#listenerExecutor(Executor)
+         */
+        @ApiStatus.Experimental
+        @AssumeNotNull
+        @Override
+        public Builder listenerExecutor(@NotNull Executor executor) {
+            impl.listenerExecutor(executor);
+            return this;
+        }
+
         /**
          * @see Application.Builder#build()
          */
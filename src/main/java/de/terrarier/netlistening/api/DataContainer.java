@@ -17,11 +17,15 @@ package de.terrarier.netlistening.api;
 
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import de.terrarier.netlistening.internal.CancelSignal;
+import de.terrarier.netlistening.network.PacketDataDecoder;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,7 +38,16 @@ import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZ
  */
 public final class DataContainer {
 
-    private final List<DataComponent<?>> data;
+    private List<DataComponent<?>> data;
+    // Decoded data is stored in slots (primitives without being boxed) until the data
+    // is accessed as a list of components.
+    private DataType<?>[] types;
+    private long[] primitives;
+    private Object[] references;
+    // Lazily decoded data is decoded from the frame of the packet when it gets read for the first time.
+    private ByteBuf frame;
+    private PacketDataDecoder.DecoderContext context;
+    private boolean lazy;
     private int readerIndex;
     private boolean encrypted;
 
@@ -47,11 +60,111 @@ public final class DataContainer {
         data = components;
     }
 
+    /**
+     * Creates a container whose data is stored in slots which have to be
+     * filled via {@link #setPrimitive(int, long)} and {@link #setReference(int, Object)}.
+     *
+     * @param types the types of the data which is stored in the container.
+     */
+    @ApiStatus.Internal
+    public DataContainer(@AssumeNotNull DataType<?>[] types) {
+        this.types = types;
+        primitives = new long[types.length];
+    }
+
+    @ApiStatus.Internal
+    public void setPrimitive(int index, long data) {
+        primitives[index] = data;
+    }
+
+    @ApiStatus.Internal
+    public void setReference(int index, Object data) {
+        if (references == null) {
+            references = new Object[types.length];
+        }
+        references[index] = data;
+    }
+
+    /**
+     * Marks the data at the passed index to be decoded lazily.
+     *
+     * @param index the index of the data.
+     * @param offset the offset of the data in the frame of the packet.
+     */
+    @ApiStatus.Internal
+    public void setOffset(int index, int offset) {
+        primitives[index] = offset;
+    }
+
+    /**
+     * Sets the frame from which data which wasn't decoded yet gets decoded,
+     * the frame has to be released via {@link #release()}.
+     *
+     * @param frame the frame of the packet which contains the data.
+     * @param context the context of the decoder which received the packet.
+     */
+    @ApiStatus.Internal
+    public void setFrame(@AssumeNotNull ByteBuf frame, @AssumeNotNull PacketDataDecoder.DecoderContext context) {
+        this.frame = frame;
+        this.context = context;
+        lazy = true;
+    }
+
+    /**
+     * Releases the frame of lazily decoded data, data which wasn't decoded
+     * until now can't be decoded anymore afterwards.
+     */
+    @ApiStatus.Internal
+    public void release() {
+        final ByteBuf frame = this.frame;
+        if (frame != null) {
+            this.frame = null;
+            context = null;
+            frame.release();
+        }
+    }
+
+    /**
+     * Decodes all the data of the container which wasn't decoded yet.
+     * Lazily decoded data can only be decoded while the packet is handled by
+     * the decode listeners, so this has to be called before such a container
+     * is kept or passed to another thread.
+     *
+     * @return the local reference.
+     * @throws IllegalStateException if the packet isn't being handled anymore and
+     * there is data left which wasn't decoded yet.
+     */
+    @ApiStatus.Experimental
+    @AssumeNotNull
+    public DataContainer decodeAll() {
+        final DataType<?>[] types = this.types;
+        if (lazy && types != null) {
+            for (int i = 0; i < types.length; i++) {
+                if (!types[i].isPrimitive()) {
+                    getValue(i);
+                }
+            }
+            // The frame isn't needed anymore as all the data was decoded.
+            release();
+        }
+        return this;
+    }
+
+    /**
+     * @param index the index of the data whose type should be returned.
+     * @return the type of the data at the passed index.
+     */
+    @AssumeNotNull
+    @ApiStatus.Internal
+    public DataType<?> getType(int index) {
+        return types != null ? types[index] : data.get(index).getType();
+    }
+
     /**
      * @return the amount of data components contained in the container.
      */
     public int getSize() {
-        return data.size();
+        return types != null ? types.length : data.size();
     }
 
     /**
@@ -61,6 +174,7 @@ public final class DataContainer {
      */
     @ApiStatus.Internal
     public void addComponent(@AssumeNotNull DataComponent<?> component) {
+        materialize();
         data.add(component);
     }
 
@@ -122,6 +236,7 @@ public final class DataContainer {
     @AssumeNotNull
     @ApiStatus.Internal
     public List<DataComponent<?>> getData() {
+        materialize();
         return data;
     }
 
@@ -146,7 +261,7 @@ public final class DataContainer {
         if (component == null) {
             return false;
         }
-        this.data.add(component);
+        addComponent(component);
         return true;
     }
 
@@ -169,7 +284,7 @@ public final class DataContainer {
      */
     @AssumeNotNull
     public DataContainer subContainer(int startIndex) {
-        return subContainer(startIndex, data.size());
+        return subContainer(startIndex, getSize());
     }
 
     /**
@@ -189,7 +304,7 @@ public final class DataContainer {
 
         final DataContainer ret = new DataContainer();
         for (int i = startIndex; i < endIndex; i++) {
-            ret.data.add(data.get(i));
+            ret.data.add(getComponent(i));
         }
         return ret;
     }
@@ -198,12 +313,12 @@ public final class DataContainer {
      * @return the next object available at the
      * readerIndex, if no object is available, null.
      */
+    @SuppressWarnings("unchecked")
     public <T> T read() {
-        final DataComponent<T> component = readRaw();
-        if (component == null) {
+        if (!isReadable()) {
             return null;
         }
-        return component.getData();
+        return (T) getValue(readerIndex++);
     }
 
     /**
@@ -216,7 +331,91 @@ public final class DataContainer {
         if (!isReadable()) {
             return null;
         }
-        return (DataComponent<T>) data.get(readerIndex++);
+        return (DataComponent<T>) getComponent(readerIndex++);
+    }
+
+    /**
+     * @return the next boolean available at the readerIndex.
+     * @throws IllegalStateException if no boolean is available at the readerIndex.
+     */
+    public boolean readBoolean() {
+        final int index = checkReadable(BOOLEAN);
+        return types != null ? primitives[index] != 0L : (Boolean) data.get(index).getData();
+    }
+
+    /**
+     * @return the next byte available at the readerIndex.
+     * @throws IllegalStateException if no byte is available at the readerIndex.
+     */
+    public byte readByte() {
+        final int index = checkReadable(BYTE);
+        return types != null ? (byte) primitives[index] : (Byte) data.get(index).getData();
+    }
+
+    /**
+     * @return the next char available at the readerIndex.
+     * @throws IllegalStateException if no char is available at the readerIndex.
+     */
+    public char readChar() {
+        final int index = checkReadable(CHAR);
+        return types != null ? (char) primitives[index] : (Character) data.get(index).getData();
+    }
+
+    /**
+     * @return the next short available at the readerIndex.
+     * @throws IllegalStateException if no short is available at the readerIndex.
+     */
+    public short readShort() {
+        final int index = checkReadable(SHORT);
+        return types != null ? (short) primitives[index] : (Short) data.get(index).getData();
+    }
+
+    /**
+     * @return the next int available at the readerIndex.
+     * @throws IllegalStateException if no int is available at the readerIndex.
+     */
+    public int readInt() {
+        final int index = checkReadable(INT);
+        return types != null ? (int) primitives[index] : (Integer) data.get(index).getData();
+    }
+
+    /**
+     * @return the next long available at the readerIndex.
+     * @throws IllegalStateException if no long is available at the readerIndex.
+     */
+    public long readLong() {
+        final int index = checkReadable(LONG);
+        return types != null ? primitives[index] : (Long) data.get(index).getData();
+    }
+
+    /**
+     * @return the next float available at the readerIndex.
+     * @throws IllegalStateException if no float is available at the readerIndex.
+     */
+    public float readFloat() {
+        final int index = checkReadable(FLOAT);
+        return types != null ? Float.intBitsToFloat((int) primitives[index]) : (Float) data.get(index).getData();
+    }
+
+    /**
+     * @return the next double available at the readerIndex.
+     * @throws IllegalStateException if no double is available at the readerIndex.
+     */
+    public double readDouble() {
+        final int index = checkReadable(DOUBLE);
+        return types != null ? Double.longBitsToDouble(primitives[index]) : (Double) data.get(index).getData();
+    }
+
+    private int checkReadable(@AssumeNotNull DataType<?> type) {
+        if (!isReadable()) {
+            throw new IllegalStateException("There is no more data readable!");
+        }
+        final int index = readerIndex;
+        if (getType(index) != type) {
+            throw new IllegalStateException("The data at index " + index + " isn't of the requested type!");
+        }
+        readerIndex++;
+        return index;
     }
 
     /**
@@ -228,7 +427,7 @@ public final class DataContainer {
         final int remainingReads = remainingReads();
         final Object[] ret = new Object[remainingReads];
         for (int i = 0; i < remainingReads; i++) {
-            ret[i] = data.get(readerIndex++).getData();
+            ret[i] = getValue(readerIndex++);
         }
         return ret;
     }
@@ -237,7 +436,7 @@ public final class DataContainer {
      * @return whether it can be read from the data container or not.
      */
     public boolean isReadable() {
-        return readerIndex < data.size();
+        return readerIndex < getSize();
     }
 
     /**
@@ -245,7 +444,7 @@ public final class DataContainer {
      * returning an element contained by this DataContainer.
      */
     public int remainingReads() {
-        return data.size() - readerIndex;
+        return getSize() - readerIndex;
     }
 
     /**
@@ -264,7 +463,7 @@ public final class DataContainer {
      */
     public void skip(int elements) {
         final int result = readerIndex + checkPositiveOrZero(elements, "elements");
-        if (result > data.size()) {
+        if (result > getSize()) {
             throw new IllegalArgumentException("elements may not be > size");
         }
         readerIndex = result;
@@ -294,7 +493,64 @@ public final class DataContainer {
     @AssumeNotNull
     @Override
     public String toString() {
-        return "Length: " + data.size() + " ReaderIndex: " + readerIndex;
+        return "Length: " + getSize() + " ReaderIndex: " + readerIndex;
+    }
+
+    private Object getValue(int index) {
+        if (types == null) {
+            return data.get(index).getData();
+        }
+        final DataType<?> type = types[index];
+        if (type.isPrimitive()) {
+            return type.fromPrimitive(primitives[index]);
+        }
+        final Object reference = references == null ? null : references[index];
+        if (reference == null && lazy) {
+            return decode(index);
+        }
+        return reference;
+    }
+
+    private Object decode(int index) {
+        final ByteBuf frame = this.frame;
+        if (frame == null) {
+            throw new IllegalStateException("Lazily decoded data can only be read while the packet is being handled!");
+        }
+        final Object data;
+        try {
+            final int offset = (int) primitives[index];
+            data = types[index].read0(context, Collections.emptyList(),
+                    frame.slice(offset, frame.writerIndex() - offset));
+        } catch (CancelSignal signal) {
+            // Handling cases in which objects can't get deserialized.
+            return null;
+        } catch (Exception e) {
+            throw new IllegalStateException("An error occurred while decoding data lazily.", e);
+        }
+        setReference(index, data);
+        return data;
+    }
+
+    @SuppressWarnings("unchecked")
+    @AssumeNotNull
+    private DataComponent<?> getComponent(int index) {
+        return types == null ? data.get(index) : new DataComponent(types[index], getValue(index));
+    }
+
+    private void materialize() {
+        final DataType<?>[] types = this.types;
+        if (types == null) {
+            return;
+        }
+        final int size = types.length;
+        final List<DataComponent<?>> data = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            data.add(getComponent(i));
+        }
+        this.data = data;
+        this.types = null;
+        primitives = null;
+        references = null;
     }
 
 }
@@ -0,0 +1,119 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.api;
+
+import de.terrarier.netlistening.api.type.DataType;
+import de.terrarier.netlistening.internal.AssumeNotNull;
+import de.terrarier.netlistening.network.PacketCache;
+import de.terrarier.netlistening.network.PacketSkeleton;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A template describing the structure of a packet which is sent
+ * frequently, the packet described by it is only resolved once
+ * instead of every time an instance of it is sent.
+ *
+ * @author Terrarier2111
+ * @since 1.13
+ */
+@ApiStatus.Experimental
+public final class PacketTemplate {
+
+    private final DataType<?>[] types;
+    private final boolean references;
+    private volatile ResolvedPacket resolved;
+
+    /**
+     * Creates a template for packets consisting of the passed data types.
+     *
+     * @param types the types of the data the packets consist of (in order).
+     * @throws IllegalArgumentException if no types or internal types are passed.
+     */
+    public PacketTemplate(@NotNull DataType<?>... types) {
+        if (types.length == 0) {
+            throw new IllegalArgumentException("Please pass the types of the packet, you may not create empty templates.");
+        }
+        boolean references = false;
+        for (DataType<?> type : types) {
+            if (!type.isPublished()) {
+                throw new IllegalArgumentException("Templates may not contain internal data types.");
+            }
+            if (!type.isPrimitive()) {
+                references = true;
+            }
+        }
+        this.types = types.clone();
+        this.references = references;
+    }
+
+    /**
+     * @return a new packet which can be filled with the data described by this template.
+     */
+    @AssumeNotNull
+    public PreparedPacket newPacket() {
+        return new PreparedPacket(this);
+    }
+
+    /**
+     * @return the number of data types the packets consist of.
+     */
+    public int getSize() {
+        return types.length;
+    }
+
+    /**
+     * @return the data types the packets consist of.
+     */
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public DataType<?>[] getTypes() {
+        return types;
+    }
+
+    boolean hasReferences() {
+        return references;
+    }
+
+    /**
+     * @param cache the cache in which the packet was resolved.
+     * @return the packet which was resolved in the passed cache before
+     * and null if it wasn't resolved in it yet.
+     */
+    @ApiStatus.Internal
+    public PacketSkeleton getPacket(@AssumeNotNull PacketCache cache) {
+        final ResolvedPacket resolved = this.resolved;
+        return resolved != null && resolved.cache == cache ? resolved.packet : null;
+    }
+
+    @ApiStatus.Internal
+    public void setPacket(@AssumeNotNull PacketCache cache, @AssumeNotNull PacketSkeleton packet) {
+        resolved = new ResolvedPacket(cache, packet);
+    }
+
+    private static final class ResolvedPacket {
+
+        private final PacketCache cache;
+        private final PacketSkeleton packet;
+
+        private ResolvedPacket(@AssumeNotNull PacketCache cache, @AssumeNotNull PacketSkeleton packet) {
+            this.cache = cache;
+            this.packet = packet;
+        }
+
+    }
+
+}
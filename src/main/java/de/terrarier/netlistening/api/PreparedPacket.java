@@ -0,0 +1,288 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.api;
+
+import de.terrarier.netlistening.api.type.DataType;
+import de.terrarier.netlistening.internal.AssumeNotNull;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.UUID;
+
+/**
+ * A packet which is filled with data described by a {@link PacketTemplate},
+ * primitive data is stored without being boxed and written directly
+ * into the outbound buffer when the packet gets sent.
+ * The data has to be put into the packet in the order described by
+ * its template.
+ *
+ * @author Terrarier2111
+ * @since 1.13
+ */
+@ApiStatus.Experimental
+public final class PreparedPacket {
+
+    private final PacketTemplate template;
+    private final long[] primitives;
+    private final Object[] references;
+    private int writerIndex;
+    private boolean encrypted;
+
+    PreparedPacket(@AssumeNotNull PacketTemplate template) {
+        this.template = template;
+        final int size = template.getSize();
+        primitives = new long[size];
+        references = template.hasReferences() ? new Object[size] : null;
+    }
+
+    /**
+     * Puts a boolean into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a boolean at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putBoolean(boolean value) {
+        return putPrimitive(DataType.BOOLEAN, value ? 1L : 0L);
+    }
+
+    /**
+     * Puts a byte into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a byte at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putByte(byte value) {
+        return putPrimitive(DataType.BYTE, value);
+    }
+
+    /**
+     * Puts a char into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a char at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putChar(char value) {
+        return putPrimitive(DataType.CHAR, value);
+    }
+
+    /**
+     * Puts a short into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a short at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putShort(short value) {
+        return putPrimitive(DataType.SHORT, value);
+    }
+
+    /**
+     * Puts an int into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe an int at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putInt(int value) {
+        return putPrimitive(DataType.INT, value);
+    }
+
+    /**
+     * Puts a long into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a long at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putLong(long value) {
+        return putPrimitive(DataType.LONG, value);
+    }
+
+    /**
+     * Puts a float into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a float at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putFloat(float value) {
+        return putPrimitive(DataType.FLOAT, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Puts a double into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a double at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putDouble(double value) {
+        return putPrimitive(DataType.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Puts a string into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a string at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putString(@NotNull String value) {
+        return putReference(DataType.STRING, value);
+    }
+
+    /**
+     * Puts a byte array into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe a byte array at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putBytes(byte @NotNull [] value) {
+        return putReference(DataType.BYTE_ARRAY, value);
+    }
+
+    /**
+     * Puts an uuid into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe an uuid at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putUUID(@NotNull UUID value) {
+        return putReference(DataType.UUID, value);
+    }
+
+    /**
+     * Puts an object which gets serialized into the packet.
+     *
+     * @param value the value which should be put into the packet.
+     * @return the local reference.
+     * @throws IllegalStateException if the template doesn't describe an object at the current position.
+     */
+    @AssumeNotNull
+    public PreparedPacket putObject(@NotNull Object value) {
+        return putReference(DataType.OBJECT, value);
+    }
+
+    @AssumeNotNull
+    private PreparedPacket putPrimitive(@AssumeNotNull DataType<?> type, long value) {
+        primitives[checkType(type)] = value;
+        return this;
+    }
+
+    @AssumeNotNull
+    private PreparedPacket putReference(@AssumeNotNull DataType<?> type, @AssumeNotNull Object value) {
+        references[checkType(type)] = value;
+        return this;
+    }
+
+    private int checkType(@AssumeNotNull DataType<?> type) {
+        final DataType<?>[] types = template.getTypes();
+        final int index = writerIndex;
+        if (index == types.length) {
+            throw new IllegalStateException("The packet was already filled completely!");
+        }
+        if (types[index] != type) {
+            throw new IllegalStateException("The template describes a different type at index " + index + '!');
+        }
+        writerIndex++;
+        return index;
+    }
+
+    /**
+     * Resets the packet, so it can be filled with new data instead of
+     * creating a new packet via {@link PacketTemplate#newPacket()}.
+     * Note that packets are encoded asynchronously, so a packet may only
+     * be reset once it was encoded, for example after a response to it
+     * was received.
+     *
+     * @return the local reference.
+     */
+    @AssumeNotNull
+    public PreparedPacket reset() {
+        // The references are kept as they get overwritten when the packet is filled again.
+        writerIndex = 0;
+        return this;
+    }
+
+    /**
+     * @return the template describing the structure of this packet.
+     */
+    @AssumeNotNull
+    public PacketTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return whether all the data described by the template was put into this packet.
+     */
+    public boolean isComplete() {
+        return writerIndex == primitives.length;
+    }
+
+    /**
+     * Sets whether the data contained in this packet gets
+     * encrypted or not.
+     *
+     * @param encrypted if the data contained gets encrypted.
+     */
+    public void setEncrypted(boolean encrypted) {
+        this.encrypted = encrypted;
+    }
+
+    /**
+     * @return whether the data contained in this packet gets encrypted
+     * when it is sent through the network or not.
+     */
+    public boolean isEncrypted() {
+        return encrypted;
+    }
+
+    /**
+     * @param index the index of the primitive data which should be returned.
+     * @return the primitive data at the passed index in its raw long representation.
+     */
+    @ApiStatus.Internal
+    public long getPrimitive(int index) {
+        return primitives[index];
+    }
+
+    /**
+     * @param index the index of the data which should be returned.
+     * @return the non-primitive data at the passed index and null if the data
+     * at the passed index is primitive.
+     */
+    @ApiStatus.Internal
+    public Object getReference(int index) {
+        return references == null ? null : references[index];
+    }
+
+}
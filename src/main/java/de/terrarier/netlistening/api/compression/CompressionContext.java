@@ -0,0 +1,133 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.api.compression;
+
+import de.terrarier.netlistening.internal.AssumeNotNull;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author Terrarier2111
+ * @since 1.13
+ */
+@ApiStatus.Internal
+public final class CompressionContext {
+
+    private static final int OUTPUT_SIZE = 1024;
+
+    private final byte[] dictionary;
+    private final boolean contextTakeover;
+    // The deflater and the inflater are only used by the event loop of the connection, so they can be reused
+    // for all packets.
+    private Deflater deflater;
+    private Inflater inflater;
+    // Direct buffers don't expose their content as an array, so it gets copied through these arrays
+    // which are reused for all packets as well.
+    private byte[] input;
+    private byte[] output;
+
+    public CompressionContext(byte[] dictionary, boolean contextTakeover) {
+        this.dictionary = dictionary;
+        this.contextTakeover = contextTakeover;
+    }
+
+    /**
+     * @return whether the compression context is kept across packets, which requires every
+     * deflated packet to be sent and inflated in order.
+     */
+    public boolean isContextTakeover() {
+        return contextTakeover;
+    }
+
+    /**
+     * @return a deflater which is ready to compress a new packet.
+     */
+    @AssumeNotNull
+    public Deflater startDeflate() {
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        } else if (contextTakeover) {
+            // The stream is continued, so the new packet can reference the previous ones.
+            return deflater;
+        } else {
+            deflater.reset();
+        }
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        return deflater;
+    }
+
+    /**
+     * @return an inflater which is ready to decompress a new packet.
+     */
+    @AssumeNotNull
+    public Inflater startInflate() {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        } else if (contextTakeover) {
+            return inflater;
+        } else {
+            inflater.reset();
+        }
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary);
+        }
+        return inflater;
+    }
+
+    /**
+     * @param size the number of bytes which have to fit into the array.
+     * @return an array which can hold the input of the deflater or the inflater.
+     */
+    @AssumeNotNull
+    public byte[] getInput(int size) {
+        if (input == null || input.length < size) {
+            input = new byte[Math.max(size, OUTPUT_SIZE)];
+        }
+        return input;
+    }
+
+    /**
+     * @return an array into which the deflater can write its output.
+     */
+    @AssumeNotNull
+    public byte[] getOutput() {
+        if (output == null) {
+            output = new byte[OUTPUT_SIZE];
+        }
+        return output;
+    }
+
+    /**
+     * Releases the native resources held by this context.
+     */
+    public void release() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+        input = null;
+        output = null;
+    }
+
+}
@@ -17,14 +17,24 @@ package de.terrarier.netlistening.api.compression;
 
 import de.terrarier.netlistening.internal.AssumeNotNull;
 
+import java.util.Arrays;
+
+import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZero;
+
 /**
  * @author Terrarier2111
  * @since 1.0
  */
 public final class CompressionSetting {
 
+    private static final int MAX_DICTIONARY_SIZE = 1 << 15;
+
     private boolean varIntCompression;
     private boolean nibbleCompression;
+    private boolean payloadCompression;
+    private int payloadCompressionThreshold = 256;
+    private byte[] payloadCompressionDictionary;
+    private boolean payloadCompressionContextTakeover;
 
     /**
      * Sets if VarInt compression should be used to compress internal data
@@ -51,6 +61,65 @@ public final class CompressionSetting {
         return this;
     }
 
+    /**
+     * Sets if the payload of packets should be compressed using deflate.
+     *
+     * @param enabled if payload compression should be used.
+     * @return the local reference.
+     */
+    @AssumeNotNull
+    public CompressionSetting payloadCompression(boolean enabled) {
+        this.payloadCompression = enabled;
+        return this;
+    }
+
+    /**
+     * Sets the minimum size a packet must have in order to get its payload compressed,
+     * smaller packets are sent uncompressed.
+     *
+     * @param threshold the minimum size in bytes of packets which get compressed.
+     * @return the local reference.
+     */
+    @AssumeNotNull
+    public CompressionSetting payloadCompressionThreshold(int threshold) {
+        this.payloadCompressionThreshold = checkPositiveOrZero(threshold, "threshold");
+        return this;
+    }
+
+    /**
+     * Sets a preset dictionary which is used to compress payloads. The dictionary should contain
+     * data which is likely to appear in packets (for example common strings), this makes the
+     * compression of small packets worthwhile, so the threshold can be lowered as well.
+     * Only the last 32 KiB of the dictionary are used.
+     *
+     * @param dictionary the dictionary which should be used to compress payloads and null to use none.
+     * @return the local reference.
+     */
+    @AssumeNotNull
+    public CompressionSetting payloadCompressionDictionary(byte[] dictionary) {
+        if (dictionary != null && dictionary.length > MAX_DICTIONARY_SIZE) {
+            // Deflate can't reference data which is further away than the size of its window.
+            dictionary = Arrays.copyOfRange(dictionary, dictionary.length - MAX_DICTIONARY_SIZE, dictionary.length);
+        }
+        this.payloadCompressionDictionary = dictionary;
+        return this;
+    }
+
+    /**
+     * Sets if the compression context should be kept across the packets of a connection,
+     * which allows packets to reference data of previously sent packets.
+     * Note that this keeps about 300 KiB of compression state per connection, as the
+     * window size is fixed to 32 KiB.
+     *
+     * @param enabled if the compression context should be kept across packets.
+     * @return the local reference.
+     */
+    @AssumeNotNull
+    public CompressionSetting payloadCompressionContextTakeover(boolean enabled) {
+        this.payloadCompressionContextTakeover = enabled;
+        return this;
+    }
+
     /**
      * @return if VarInt compression is enabled.
      */
@@ -65,4 +134,32 @@ public final class CompressionSetting {
         return nibbleCompression;
     }
 
+    /**
+     * @return if payload compression is enabled.
+     */
+    public boolean isPayloadCompression() {
+        return payloadCompression;
+    }
+
+    /**
+     * @return the minimum size in bytes of packets which get compressed.
+     */
+    public int getPayloadCompressionThreshold() {
+        return payloadCompressionThreshold;
+    }
+
+    /**
+     * @return the preset dictionary which is used to compress payloads and null if there is none.
+     */
+    public byte[] getPayloadCompressionDictionary() {
+        return payloadCompressionDictionary;
+    }
+
+    /**
+     * @return if the compression context is kept across the packets of a connection.
+     */
+    public boolean isPayloadCompressionContextTakeover() {
+        return payloadCompressionContextTakeover;
+    }
+
 }
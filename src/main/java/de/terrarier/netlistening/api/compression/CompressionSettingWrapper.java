@@ -50,6 +50,42 @@ public final class CompressionSettingWrapper {
         return this;
     }
 
+    /**
+     * @see CompressionSetting#payloadCompression(boolean)
+     */
+    @AssumeNotNull
+    public CompressionSettingWrapper payloadCompression(boolean enabled) {
+        compressionSetting.payloadCompression(enabled);
+        return this;
+    }
+
+    /**
+     * @see CompressionSetting#payloadCompressionThreshold(int)
+     */
+    @AssumeNotNull
+    public CompressionSettingWrapper payloadCompressionThreshold(int threshold) {
+        compressionSetting.payloadCompressionThreshold(threshold);
+        return this;
+    }
+
+    /**
+     * @see CompressionSetting#payloadCompressionDictionary(byte[])
+     */
+    @AssumeNotNull
+    public CompressionSettingWrapper payloadCompressionDictionary(byte[] dictionary) {
+        compressionSetting.payloadCompressionDictionary(dictionary);
+        return this;
+    }
+
+    /**
+     * @see CompressionSetting#payloadCompressionContextTakeover(boolean)
+     */
+    @AssumeNotNull
+    public CompressionSettingWrapper payloadCompressionContextTakeover(boolean enabled) {
+        compressionSetting.payloadCompressionContextTakeover(enabled);
+        return this;
+    }
+
     /**
      * Sets the compression setting for the builder
      * and returns it.
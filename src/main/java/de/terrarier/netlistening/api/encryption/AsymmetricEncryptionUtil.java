@@ -63,9 +63,7 @@ public final class AsymmetricEncryptionUtil {
     static byte[] performCipher(@AssumeNotNull byte[] input, @AssumeNotNull EncryptionOptions encryptionOptions,
                                 @AssumeNotNull Key key, int mode) {
         try {
-            final Cipher cipher = Cipher.getInstance(encryptionOptions.build());
-            cipher.init(mode, key);
-            return cipher.doFinal(input);
+            return createCipher(encryptionOptions, key, mode).doFinal(input);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException |
                 InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
             e.printStackTrace();
@@ -73,6 +71,14 @@ public final class AsymmetricEncryptionUtil {
         return null;
     }
 
+    @AssumeNotNull
+    static Cipher createCipher(@AssumeNotNull EncryptionOptions encryptionOptions, @AssumeNotNull Key key, int mode)
+            throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        final Cipher cipher = Cipher.getInstance(encryptionOptions.build());
+        cipher.init(mode, key);
+        return cipher;
+    }
+
     @AssumeNotNull
     public static PublicKey readPublicKey(@AssumeNotNull byte[] publicKey,
                                           @AssumeNotNull EncryptionOptions encryptionOptions)
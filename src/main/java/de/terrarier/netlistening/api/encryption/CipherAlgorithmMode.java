@@ -27,6 +27,14 @@ public enum CipherAlgorithmMode {
 
     private static final CipherAlgorithmMode[] VALUES = values();
 
+    /**
+     * @return whether the mode authenticates the data it encrypts, which makes a separate hmac
+     * for encrypted data unnecessary.
+     */
+    public boolean isAuthenticated() {
+        return this == GCM;
+    }
+
     /**
      * Maps an ordinal number to its respective mode.
      *
@@ -114,7 +114,8 @@ public final class EncryptionOptions {
                 mode = type.getDefaultMode();
             }
             if (padding == null) {
-                padding = type.getDefaultPadding();
+                // Authenticated modes operate like stream ciphers, so they don't support any padding.
+                padding = mode.isAuthenticated() ? CipherAlgorithmPadding.NO : type.getDefaultPadding();
             }
         }
     }
@@ -19,7 +19,13 @@ import de.terrarier.netlistening.internal.AssumeNotNull;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 
 /**
  * @author Terrarier2111
@@ -27,11 +33,44 @@ import javax.crypto.SecretKey;
  */
 public final class SymmetricEncryptionContext {
 
+    private static final int NONCE_SIZE = 12;
+    private static final int COUNTER_SIZE = 8;
+    private static final int TAG_SIZE = 16;
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
     private final SymmetricEncryptionData symmetricEncryptionData;
+    private final boolean authenticated;
+    private final byte localDirection;
+    // The ciphers are only used by the event loop of the connection, so they can be reused for all packets.
+    private Cipher encryptCipher;
+    private Cipher decryptCipher;
+    // The nonce counters are only used if the mode is authenticated.
+    private long encryptCounter;
+    private long decryptCounter;
 
+    /**
+     * Creates a context which en-/decrypts data in the direction of a client,
+     * the direction only affects the nonces of authenticated modes.
+     *
+     * @param symmetricEncryptionOptions the options which should be used to en-/decrypt data.
+     * @param secretKey the secret key which should be used to en-/decrypt data.
+     */
     public SymmetricEncryptionContext(@NotNull EncryptionOptions symmetricEncryptionOptions,
                                       @NotNull SecretKey secretKey) {
+        this(symmetricEncryptionOptions, secretKey, false);
+    }
+
+    /**
+     * @param symmetricEncryptionOptions the options which should be used to en-/decrypt data.
+     * @param secretKey the secret key which should be used to en-/decrypt data.
+     * @param server whether the context is used by a server, which determines the direction
+     *               of the nonces of authenticated modes.
+     */
+    public SymmetricEncryptionContext(@NotNull EncryptionOptions symmetricEncryptionOptions,
+                                      @NotNull SecretKey secretKey, boolean server) {
         this.symmetricEncryptionData = new SymmetricEncryptionData(symmetricEncryptionOptions, secretKey);
+        authenticated = symmetricEncryptionOptions.getMode().isAuthenticated();
+        // Both sides share the same key, so the nonces of both directions have to differ.
+        localDirection = (byte) (server ? 1 : 0);
     }
 
     /**
@@ -43,23 +82,175 @@ public final class SymmetricEncryptionContext {
     }
 
     /**
-     * @param data the data to be encrypted.
-     * @return the data encrypted with the internal encryption key.
+     * @return whether the encrypted data is authenticated by the cipher itself.
+     */
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    /**
+     * @param length the number of bytes which should be encrypted.
+     * @return the maximum number of bytes the encrypted data can occupy.
+     * @throws GeneralSecurityException if the cipher couldn't be created.
      */
     @ApiStatus.Internal
-    @AssumeNotNull
-    public byte[] encrypt(@AssumeNotNull byte[] data) {
-        return SymmetricEncryptionUtil.encrypt(data, symmetricEncryptionData);
+    public int getEncryptedSize(int length) throws GeneralSecurityException {
+        if (authenticated) {
+            return COUNTER_SIZE + length + TAG_SIZE;
+        }
+        return getEncryptCipher().getOutputSize(length);
+    }
+
+    /**
+     * Encrypts the remaining bytes of the source into the destination buffer.
+     *
+     * @param src the data to be encrypted.
+     * @param dst the buffer the encrypted data gets written to.
+     * @return the number of encrypted bytes written to the destination buffer.
+     * @throws GeneralSecurityException if the encryption failed.
+     */
+    @ApiStatus.Internal
+    public int encrypt(@AssumeNotNull ByteBuffer src, @AssumeNotNull ByteBuffer dst) throws GeneralSecurityException {
+        final Cipher cipher = getEncryptCipher();
+        try {
+            if (!authenticated) {
+                return cipher.doFinal(src, dst);
+            }
+            // Every packet gets its own nonce which is derived from a counter that is sent along with the packet.
+            final long counter = ++encryptCounter;
+            cipher.init(Cipher.ENCRYPT_MODE, symmetricEncryptionData.getSecretKey(),
+                    createParameters(localDirection, counter));
+            dst.putLong(counter);
+            return COUNTER_SIZE + cipher.doFinal(src, dst);
+        } catch (GeneralSecurityException e) {
+            // The state of the cipher is undefined after a failure, so it gets recreated.
+            encryptCipher = null;
+            throw e;
+        }
     }
 
     /**
-     * @param data the data to be decrypted.
-     * @return the data decrypted with the internal encryption key.
+     * @param length the number of bytes which should be decrypted.
+     * @return the maximum number of bytes the decrypted data can occupy.
+     * @throws GeneralSecurityException if the cipher couldn't be created.
      */
     @ApiStatus.Internal
+    public int getDecryptedSize(int length) throws GeneralSecurityException {
+        if (authenticated) {
+            return Math.max(length - COUNTER_SIZE, 0);
+        }
+        return getDecryptCipher().getOutputSize(length);
+    }
+
+    /**
+     * Decrypts the remaining bytes of the source buffers into the destination buffer.
+     *
+     * @param src the data to be decrypted, which may be split up into several buffers.
+     * @param dst the buffer the decrypted data gets written to.
+     * @return the number of decrypted bytes written to the destination buffer and -1 if the data
+     * is invalid (for example because it was forged, corrupted or replayed).
+     * @throws GeneralSecurityException if the decryption failed for a reason other than invalid data.
+     */
+    @ApiStatus.Internal
+    public int decrypt(@AssumeNotNull ByteBuffer[] src, @AssumeNotNull ByteBuffer dst)
+            throws GeneralSecurityException {
+        final Cipher cipher = getDecryptCipher();
+        try {
+            if (!authenticated) {
+                return doFinal(cipher, src, dst);
+            }
+            if (remaining(src) < COUNTER_SIZE + TAG_SIZE) {
+                return -1;
+            }
+            final long counter = readCounter(src);
+            if (counter <= decryptCounter) {
+                // The packet was either replayed or reordered, so it gets dropped.
+                return -1;
+            }
+            cipher.init(Cipher.DECRYPT_MODE, symmetricEncryptionData.getSecretKey(),
+                    createParameters((byte) (localDirection ^ 1), counter));
+            final int decrypted = doFinal(cipher, src, dst);
+            decryptCounter = counter;
+            return decrypted;
+        } catch (BadPaddingException | IllegalBlockSizeException e) {
+            // The data is invalid (this includes mismatching authentication tags), so it gets dropped.
+            // Authenticated ciphers get initialized for every packet anyway, others only have to be reset
+            // instead of being recreated.
+            if (!authenticated) {
+                cipher.init(Cipher.DECRYPT_MODE, symmetricEncryptionData.getSecretKey());
+            }
+            return -1;
+        } catch (GeneralSecurityException e) {
+            // The state of the cipher is undefined after a failure, so it gets recreated.
+            decryptCipher = null;
+            throw e;
+        }
+    }
+
+    private static int doFinal(@AssumeNotNull Cipher cipher, @AssumeNotNull ByteBuffer[] src,
+                               @AssumeNotNull ByteBuffer dst) throws GeneralSecurityException {
+        final int start = dst.position();
+        // The buffers are passed to the cipher one by one, so they don't have to be merged beforehand.
+        for (ByteBuffer buffer : src) {
+            cipher.update(buffer, dst);
+        }
+        cipher.doFinal(EMPTY_BUFFER, dst);
+        return dst.position() - start;
+    }
+
+    private static int remaining(@AssumeNotNull ByteBuffer[] src) {
+        int remaining = 0;
+        for (ByteBuffer buffer : src) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    private static long readCounter(@AssumeNotNull ByteBuffer[] src) {
+        // The counter may be split up into several buffers.
+        long counter = 0L;
+        int read = 0;
+        for (ByteBuffer buffer : src) {
+            while (read < COUNTER_SIZE && buffer.hasRemaining()) {
+                counter = counter << 8 | buffer.get() & 0xFF;
+                read++;
+            }
+        }
+        return counter;
+    }
+
+    @AssumeNotNull
+    private Cipher getEncryptCipher() throws GeneralSecurityException {
+        if (encryptCipher == null) {
+            encryptCipher = createCipher(Cipher.ENCRYPT_MODE);
+        }
+        return encryptCipher;
+    }
+
+    @AssumeNotNull
+    private Cipher getDecryptCipher() throws GeneralSecurityException {
+        if (decryptCipher == null) {
+            decryptCipher = createCipher(Cipher.DECRYPT_MODE);
+        }
+        return decryptCipher;
+    }
+
+    @AssumeNotNull
+    private Cipher createCipher(int mode) throws GeneralSecurityException {
+        // Authenticated ciphers get initialized with a new nonce for every packet.
+        return authenticated ? Cipher.getInstance(symmetricEncryptionData.getOptions().build()) :
+                SymmetricEncryptionUtil.createCipher(symmetricEncryptionData, mode);
+    }
+
     @AssumeNotNull
-    public byte[] decrypt(@AssumeNotNull byte[] data) {
-        return SymmetricEncryptionUtil.decrypt(data, symmetricEncryptionData);
+    private static GCMParameterSpec createParameters(byte direction, long counter) {
+        final byte[] nonce = new byte[NONCE_SIZE];
+        nonce[0] = direction;
+        for (int i = NONCE_SIZE - 1; i >= NONCE_SIZE - COUNTER_SIZE; i--) {
+            nonce[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        return new GCMParameterSpec(TAG_SIZE << 3, nonce);
     }
 
 }
@@ -18,15 +18,15 @@ package de.terrarier.netlistening.api.encryption;
 import de.terrarier.netlistening.internal.AssumeNotNull;
 import org.jetbrains.annotations.ApiStatus;
 
+import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
+import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
-import static javax.crypto.Cipher.DECRYPT_MODE;
-import static javax.crypto.Cipher.ENCRYPT_MODE;
-
 /**
  * @author Terrarier2111
  * @since 1.0
@@ -47,20 +47,9 @@ public final class SymmetricEncryptionUtil {
     }
 
     @AssumeNotNull
-    static byte[] encrypt(@AssumeNotNull byte[] input, @AssumeNotNull SymmetricEncryptionData encryptionData) {
-        return performCipher(input, encryptionData, ENCRYPT_MODE);
-    }
-
-    @AssumeNotNull
-    static byte[] decrypt(@AssumeNotNull byte[] input, @AssumeNotNull SymmetricEncryptionData encryptionData) {
-        return performCipher(input, encryptionData, DECRYPT_MODE);
-    }
-
-    @AssumeNotNull
-    private static byte[] performCipher(@AssumeNotNull byte[] input,
-                                        @AssumeNotNull SymmetricEncryptionData encryptionData, int mode) {
-        final SecretKey secretKey = encryptionData.getSecretKey();
-        return AsymmetricEncryptionUtil.performCipher(input, encryptionData.getOptions(), secretKey, mode);
+    static Cipher createCipher(@AssumeNotNull SymmetricEncryptionData encryptionData, int mode)
+            throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        return AsymmetricEncryptionUtil.createCipher(encryptionData.getOptions(), encryptionData.getSecretKey(), mode);
     }
 
     @AssumeNotNull
@@ -69,11 +69,22 @@ public final class HashUtil {
     public static byte[] calculateHMAC(@AssumeNotNull byte[] data, @AssumeNotNull byte[] key,
                                        @AssumeNotNull HashingAlgorithm algorithm)
             throws NoSuchAlgorithmException, InvalidKeyException {
+        return createHMAC(key, algorithm).doFinal(data);
+    }
+
+    /**
+     * @param key       the key which should be used to calculate hmacs.
+     * @param algorithm the hashing algorithm which should be used to calculate hmacs.
+     * @return an initialized mac which can be reused to calculate multiple hmacs.
+     */
+    @AssumeNotNull
+    public static Mac createHMAC(@AssumeNotNull byte[] key, @AssumeNotNull HashingAlgorithm algorithm)
+            throws NoSuchAlgorithmException, InvalidKeyException {
         final String macName = algorithm.getMacName();
         final SecretKeySpec secretKeySpec = new SecretKeySpec(key, macName);
         final Mac mac = Mac.getInstance(macName);
         mac.init(secretKeySpec);
-        return mac.doFinal(data);
+        return mac;
     }
 
 }
@@ -15,14 +15,18 @@ limitations under the License.
  */
 package de.terrarier.netlistening.api.event;
 
-import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.DataContainer;
+import de.terrarier.netlistening.api.Type;
+import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import de.terrarier.netlistening.network.PacketSkeleton;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * @author Terrarier2111
@@ -31,40 +35,65 @@ import java.util.concurrent.CopyOnWriteArrayList;
 @ApiStatus.Internal
 public final class DataHandler {
 
+    private static final DecodeListener[] EMPTY_LISTENERS = new DecodeListener[0];
+    // The listeners may be changed by several threads concurrently, so the version has to be incremented atomically.
+    private static final AtomicIntegerFieldUpdater<DataHandler> VERSION_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(DataHandler.class, "version");
     private final List<PreparedListener> listeners = new CopyOnWriteArrayList<>();
+    // Incremented whenever the listeners change in order to invalidate the listeners cached by packets.
+    private volatile int version;
 
-    public void processData(@AssumeNotNull List<DataComponent<?>> data, @AssumeNotNull ConnectionImpl connection) {
-        final int dataSize = data.size();
-        if (dataSize == 0) {
+    public void processData(@AssumeNotNull DataContainer container, @AssumeNotNull ConnectionImpl connection,
+                            @AssumeNotNull PacketSkeleton packet) {
+        if (container.getSize() == 0) {
+            return;
+        }
+
+        final DecodeListener[] listeners = resolveListeners(packet);
+        if (listeners.length == 0) {
             return;
         }
 
-        final DataContainer container = new DataContainer(data);
         final DecodeEvent event = new DecodeEvent(connection, container);
-        final int listenerSize = listeners.size();
-        int hash = 1;
-
-        for (int i = 0; i < listenerSize; i++) {
-            final PreparedListener listener = listeners.get(i);
-            final int length = listener.getTypes().length;
-            if (length != 0) {
-                if (length != dataSize) {
-                    continue;
-                }
+        for (DecodeListener listener : listeners) {
+            container.resetReaderIndex();
+            listener.trigger(event);
+        }
+    }
 
-                if (hash == 1) {
-                    for (int j = 0; j < dataSize; j++) {
-                        hash = 31 * hash + data.get(j).getType().hashCode();
-                    }
+    @AssumeNotNull
+    private DecodeListener[] resolveListeners(@AssumeNotNull PacketSkeleton packet) {
+        final int version = this.version;
+        DecodeListener[] listeners = packet.getListeners(version);
+        if (listeners == null) {
+            final DataType<?>[] data = packet.getData();
+            final List<DecodeListener> interested = new ArrayList<>();
+            for (PreparedListener listener : this.listeners) {
+                if (isInterested(listener.getTypes(), data)) {
+                    interested.add(listener.getWrapped());
                 }
+            }
+            listeners = interested.isEmpty() ? EMPTY_LISTENERS : interested.toArray(EMPTY_LISTENERS);
+            packet.setListeners(listeners, version);
+        }
+        return listeners;
+    }
 
-                if (hash != listener.hashCode()) {
-                    continue;
-                }
+    private static boolean isInterested(@AssumeNotNull Type[] types, @AssumeNotNull DataType<?>[] data) {
+        final int length = types.length;
+        if (length == 0) {
+            // Listeners which don't specify any types are interested in all packets.
+            return true;
+        }
+        if (length != data.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (types[i].getId() != data[i].getId()) {
+                return false;
             }
-            container.resetReaderIndex();
-            listener.getWrapped().trigger(event);
         }
+        return true;
     }
 
     int addListener(@AssumeNotNull DecodeListener listener) {
@@ -74,6 +103,7 @@ public final class DataHandler {
         }
         try {
             listeners.add(new PreparedListener(listener));
+            VERSION_UPDATER.incrementAndGet(this);
         } catch (NoSuchMethodException | SecurityException e) {
             e.printStackTrace();
         }
@@ -82,10 +112,12 @@ public final class DataHandler {
 
     void removeListener(int id) {
         listeners.remove(id);
+        VERSION_UPDATER.incrementAndGet(this);
     }
 
     public void unregisterListeners() {
         listeners.clear();
+        VERSION_UPDATER.incrementAndGet(this);
     }
 
 }
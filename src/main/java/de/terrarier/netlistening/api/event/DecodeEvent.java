@@ -37,6 +37,10 @@ public final class DecodeEvent extends ConnectionEvent {
     }
 
     /**
+     * Note that if lazy decoding is enabled, data which wasn't read yet can only be
+     * decoded while the listener is called. In order to keep the container afterwards,
+     * {@link DataContainer#decodeAll()} has to be called before the listener returns.
+     *
      * @return the data which was decoded.
      */
     @AssumeNotNull
@@ -19,11 +19,8 @@ import de.terrarier.netlistening.internal.AssumeNotNull;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.lang.reflect.Method;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * @author Terrarier2111
@@ -32,15 +29,31 @@ import java.util.concurrent.CopyOnWriteArrayList;
 @ApiStatus.Internal
 public final class EventManager {
 
-    private final Map<ListenerType, List<Listener<?>>[]> listeners = new ConcurrentHashMap<>();
+    private static final Listener<?>[] EMPTY_LISTENERS = new Listener<?>[0];
+    // The listeners get modified while holding the lock of this map.
+    private final Map<ListenerType, List<Listener<?>>[]> listeners = new EnumMap<>(ListenerType.class);
+    // Flattened snapshots of the listeners sorted by their priority, indexed by the ordinal of their type.
+    private final AtomicReferenceArray<Listener<?>[]> snapshots =
+            new AtomicReferenceArray<>(ListenerType.VALUES.length);
     private final DataHandler handler;
 
     public EventManager(@AssumeNotNull DataHandler handler) {
         this.handler = handler;
+        for (int i = 0; i < ListenerType.VALUES.length; i++) {
+            snapshots.set(i, EMPTY_LISTENERS);
+        }
     }
 
-    @SuppressWarnings("unchecked")
     public long registerListener(@AssumeNotNull Listener<?> listener) {
+        synchronized (listeners) {
+            final long listenerId = registerListener0(listener);
+            updateSnapshot(ListenerType.VALUES[(byte) (listenerId >>> 40)]);
+            return listenerId;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private long registerListener0(@AssumeNotNull Listener<?> listener) {
         final Class<?> listenerClass = listener.getClass();
         final ListenerType type = ListenerType.resolveType(listenerClass);
         Objects.requireNonNull(type, "The type of the listener " + listenerClass.getName() + " cannot be resolved!");
@@ -51,7 +64,7 @@ public final class EventManager {
         List<Listener<?>> demanded = listenerPriorities[priorityId];
 
         if (demanded == null) {
-            demanded = new CopyOnWriteArrayList<>();
+            demanded = new ArrayList<>();
             listenerPriorities[priorityId] = demanded;
         }
         long listenerId = demanded.size();
@@ -71,14 +84,17 @@ public final class EventManager {
         if (listenerType == ListenerType.DECODE) {
             handler.unregisterListeners();
         }
-        final List<Listener<?>>[] listenerPriorities = listeners.get(listenerType);
-        if (listenerPriorities != null) {
-            for (int i = 0; i < 5; i++) {
-                final List<Listener<?>> listeners = listenerPriorities[i];
-                if (listeners != null) {
-                    listeners.clear();
+        synchronized (listeners) {
+            final List<Listener<?>>[] listenerPriorities = listeners.get(listenerType);
+            if (listenerPriorities != null) {
+                for (int i = 0; i < 5; i++) {
+                    final List<Listener<?>> listeners = listenerPriorities[i];
+                    if (listeners != null) {
+                        listeners.clear();
+                    }
                 }
             }
+            updateSnapshot(listenerType);
         }
     }
 
@@ -87,8 +103,34 @@ public final class EventManager {
         if (type == ListenerType.DECODE) {
             handler.removeListener((char) (listenerId >>> 16));
         }
-        final List<Listener<?>>[] listenerPriorities = listeners.get(type);
-        listenerPriorities[(byte) (listenerId >>> 32)].remove((char) listenerId);
+        synchronized (listeners) {
+            final List<Listener<?>>[] listenerPriorities = listeners.get(type);
+            listenerPriorities[(byte) (listenerId >>> 32)].remove((char) listenerId);
+            updateSnapshot(type);
+        }
+    }
+
+    private void updateSnapshot(@AssumeNotNull ListenerType listenerType) {
+        final List<Listener<?>>[] listenerPriorities = listeners.get(listenerType);
+        final List<Listener<?>> snapshot = new ArrayList<>();
+        if (listenerPriorities != null) {
+            for (int i = 0; i < 5; i++) {
+                final List<Listener<?>> priorityListeners = listenerPriorities[i];
+                if (priorityListeners != null) {
+                    snapshot.addAll(priorityListeners);
+                }
+            }
+        }
+        snapshots.set(listenerType.ordinal(), snapshot.isEmpty() ? EMPTY_LISTENERS : snapshot.toArray(EMPTY_LISTENERS));
+    }
+
+    /**
+     * @param listenerType the type of the listeners.
+     * @return whether any listeners of the passed type are registered, this can be used
+     * to avoid creating events which wouldn't be passed to any listener.
+     */
+    public boolean hasListeners(@AssumeNotNull ListenerType listenerType) {
+        return snapshots.get(listenerType.ordinal()).length != 0;
     }
 
     public boolean callEvent(@AssumeNotNull ListenerType listenerType, @AssumeNotNull Event event) {
@@ -97,29 +139,19 @@ public final class EventManager {
 
     public boolean callEvent(@AssumeNotNull ListenerType listenerType, @AssumeNotNull CancelAction cancelAction,
                              @AssumeNotNull Event event) {
-        final List<Listener<?>>[] listeners = this.listeners.get(listenerType);
-        if (listeners == null) {
-            return false;
-        }
+        final Listener<?>[] listeners = snapshots.get(listenerType.ordinal());
         final boolean cancellable = event instanceof Cancellable;
-        for (int i = 0; i < 5; i++) {
-            final List<Listener<?>> priorityListeners = listeners[i];
-            if (priorityListeners != null) {
-                final int priorityListenersSize = priorityListeners.size();
-                for (int j = 0; j < priorityListenersSize; j++) {
-                    final Listener listener = priorityListeners.get(j);
-                    try {
-                        listener.trigger(event);
-                    } catch (Throwable throwable) {
-                        if (event.getClass() != ExceptionTrowEvent.class && !(throwable instanceof OutOfMemoryError)) {
-                            handleExceptionThrown(throwable);
-                        }
-                    }
-                    if (cancellable && cancelAction == CancelAction.INTERRUPT && ((Cancellable) event).isCancelled()) {
-                        return true;
-                    }
+        for (Listener listener : listeners) {
+            try {
+                listener.trigger(event);
+            } catch (Throwable throwable) {
+                if (event.getClass() != ExceptionTrowEvent.class && !(throwable instanceof OutOfMemoryError)) {
+                    handleExceptionThrown(throwable);
                 }
             }
+            if (cancellable && cancelAction == CancelAction.INTERRUPT && ((Cancellable) event).isCancelled()) {
+                return true;
+            }
         }
         return cancellable && ((Cancellable) event).isCancelled();
     }
@@ -64,7 +64,8 @@ public final class InvalidDataEvent extends ConnectionEvent {
     public enum DataInvalidReason {
 
         EMPTY_PACKET, INCOMPLETE_PACKET, MALICIOUS_ACTION, INVALID_ID, INVALID_LENGTH, INVALID_DATA_TYPE,
-        INVALID_KEEP_ALIVE_ID, INVALID_HANDSHAKE, INVALID_PAYLOAD_TYPE, TOO_LARGE_FRAME, UNSUPPORTED_KEEP_ALIVE, UNSPECIFIED
+        INVALID_KEEP_ALIVE_ID, INVALID_HANDSHAKE, INVALID_PAYLOAD_TYPE, TOO_LARGE_FRAME, UNSUPPORTED_KEEP_ALIVE,
+        INVALID_COMPRESSED_DATA, INVALID_ENCRYPTED_DATA, UNSPECIFIED
 
     }
 
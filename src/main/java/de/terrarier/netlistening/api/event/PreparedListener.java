@@ -19,7 +19,6 @@ import de.terrarier.netlistening.api.Type;
 import de.terrarier.netlistening.internal.AssumeNotNull;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
 
 /**
  * @author Terrarier2111
@@ -30,14 +29,12 @@ final class PreparedListener {
     private static final Type[] EMPTY_TYPES = new Type[0];
     private final DecodeListener wrapped;
     private final Type[] types;
-    private final int hash;
 
     PreparedListener(@AssumeNotNull DecodeListener listener) throws NoSuchMethodException, SecurityException {
         wrapped = listener;
         final Method method = listener.getClass().getDeclaredMethod("trigger", Event.class);
         final PacketListener packetListener = method.getAnnotation(PacketListener.class);
         types = packetListener != null ? packetListener.dataTypes() : EMPTY_TYPES;
-        hash = Arrays.hashCode(types);
     }
 
     @AssumeNotNull
@@ -50,12 +47,4 @@ final class PreparedListener {
         return types;
     }
 
-    /**
-     * @see Object#hashCode()
-     */
-    @Override
-    public int hashCode() {
-        return hash;
-    }
-
 }
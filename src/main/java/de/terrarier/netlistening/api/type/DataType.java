@@ -50,6 +50,7 @@ public abstract class DataType<T> {
     private static final DataTypeInternalPayload INTERNAL_PAYLOAD = new DataTypeInternalPayload();
     private static final DataTypeEncrypt ENCRYPT = new DataTypeEncrypt();
     private static final DataTypeHmac HMAC = new DataTypeHmac();
+    private static final DataTypeCompress COMPRESS = new DataTypeCompress();
 
     private final byte id;
     private final byte minSize;
@@ -72,6 +73,54 @@ public abstract class DataType<T> {
     protected abstract T read(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
                               @AssumeNotNull ByteBuf buffer) throws CancelSignal;
 
+    @ApiStatus.Internal
+    public final void skip0(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        checkReadable(buffer, minSize);
+        skip(buffer);
+    }
+
+    /**
+     * Skips the data without decoding it, by default the data is expected
+     * to have a fixed size of {@code minSize} bytes.
+     */
+    @ApiStatus.Internal
+    protected void skip(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        buffer.skipBytes(minSize);
+    }
+
+    @ApiStatus.Internal
+    public final long readPrimitive0(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        checkReadable(buffer, minSize);
+        return readPrimitive(buffer);
+    }
+
+    /**
+     * Reads primitive data and returns it in its raw long representation, this is only
+     * supported by data types representing primitives.
+     */
+    @ApiStatus.Internal
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        throw new UnsupportedOperationException("This data type doesn't represent a primitive.");
+    }
+
+    /**
+     * Converts primitive data from its raw long representation into the type
+     * represented by this data type, this is only supported by data types representing primitives.
+     */
+    @ApiStatus.Internal
+    public T fromPrimitive(long data) {
+        throw new UnsupportedOperationException("This data type doesn't represent a primitive.");
+    }
+
+    /**
+     * @return whether this data type represents a primitive whose data can be
+     * represented as a long.
+     */
+    @ApiStatus.Internal
+    public boolean isPrimitive() {
+        return false;
+    }
+
     @ApiStatus.Internal
     public void write0(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
                        @AssumeNotNull ByteBuf buffer, T data) throws CancelSignal {
@@ -83,6 +132,22 @@ public abstract class DataType<T> {
     protected abstract void write(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer, T data)
             throws CancelSignal;
 
+    @ApiStatus.Internal
+    public final void writePrimitive0(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer,
+                                      long data) {
+        checkWriteable(application, buffer, minSize);
+        writePrimitive(buffer, data);
+    }
+
+    /**
+     * Writes primitive data in its raw long representation, this is only supported
+     * by data types representing primitives.
+     */
+    @ApiStatus.Internal
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        throw new UnsupportedOperationException("This data type doesn't represent a primitive.");
+    }
+
     public final byte getId() {
         return id;
     }
@@ -117,6 +182,16 @@ public abstract class DataType<T> {
         }
     }
 
+    @ApiStatus.Internal
+    static void skipLengthPrefixed(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        final int length = buffer.readInt();
+        // Invalid lengths are reported when the data gets read.
+        if (length > 0) {
+            checkReadable(buffer, length);
+            buffer.skipBytes(length);
+        }
+    }
+
     @ApiStatus.Internal
     static void checkWriteable(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer, int length) {
         ByteBufUtilExtension.correctSize(buffer, length, application.getBuffer());
@@ -175,6 +250,12 @@ public abstract class DataType<T> {
         return HMAC;
     }
 
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public static DataTypeCompress getDTC() {
+        return COMPRESS;
+    }
+
     /**
      * @see Object#equals(Object)
      */
@@ -43,4 +43,25 @@ public final class DataTypeBoolean extends DataType<Boolean> {
         buffer.writeBoolean(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeBoolean(data != 0L);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readBoolean() ? 1L : 0L;
+    }
+
+    @AssumeNotNull
+    @Override
+    public Boolean fromPrimitive(long data) {
+        return data != 0L;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
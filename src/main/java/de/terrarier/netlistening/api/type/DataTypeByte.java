@@ -43,4 +43,25 @@ public final class DataTypeByte extends DataType<Byte> {
         buffer.writeByte(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeByte((int) data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readByte();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Byte fromPrimitive(long data) {
+        return (byte) data;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
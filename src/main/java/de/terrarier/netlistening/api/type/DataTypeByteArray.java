@@ -48,14 +48,17 @@ public final class DataTypeByteArray extends DataType<byte[]> {
             if (length == 0) {
                 return EMPTY_BYTES;
             }
-            final byte[] data = new byte[]{0x3, 0x0, 0x0, 0x0, 0x0};
-            ConversionUtil.intToBytes(data, 1, length);
-            final InvalidDataEvent event = new InvalidDataEvent(connection,
-                    InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
+            final EventManager eventManager = application.getEventManager();
+            // The event is only created if anybody is listening.
+            if (eventManager.hasListeners(ListenerType.INVALID_DATA)) {
+                final byte[] data = new byte[]{0x3, 0x0, 0x0, 0x0, 0x0};
+                ConversionUtil.intToBytes(data, 1, length);
+                final InvalidDataEvent event = new InvalidDataEvent(connection,
+                        InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
 
-            if (application.getEventManager().callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE,
-                    event)) {
-                return EMPTY_BYTES;
+                if (eventManager.callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE, event)) {
+                    return EMPTY_BYTES;
+                }
             }
 
             throw new IllegalStateException("Received a malicious byte array of length " + length + '.');
@@ -71,4 +74,9 @@ public final class DataTypeByteArray extends DataType<byte[]> {
         ByteBufUtilExtension.writeBytes(buffer, data, application.getBuffer());
     }
 
+    @Override
+    protected void skip(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        skipLengthPrefixed(buffer);
+    }
+
 }
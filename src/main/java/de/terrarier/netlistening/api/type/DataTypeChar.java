@@ -43,4 +43,25 @@ public final class DataTypeChar extends DataType<Character> {
         buffer.writeChar(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeChar((int) data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readChar();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Character fromPrimitive(long data) {
+        return (char) data;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
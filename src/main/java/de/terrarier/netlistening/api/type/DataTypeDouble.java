@@ -43,4 +43,25 @@ public final class DataTypeDouble extends DataType<Double> {
         buffer.writeDouble(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeLong(data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readLong();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Double fromPrimitive(long data) {
+        return Double.longBitsToDouble(data);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
@@ -43,4 +43,25 @@ public final class DataTypeFloat extends DataType<Float> {
         buffer.writeFloat(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeInt((int) data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readInt();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Float fromPrimitive(long data) {
+        return Float.intBitsToFloat((int) data);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
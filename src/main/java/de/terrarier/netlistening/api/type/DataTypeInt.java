@@ -43,4 +43,25 @@ public final class DataTypeInt extends DataType<Integer> {
         buffer.writeInt(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeInt((int) data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readInt();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Integer fromPrimitive(long data) {
+        return (int) data;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
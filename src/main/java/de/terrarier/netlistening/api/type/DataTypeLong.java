@@ -43,4 +43,25 @@ public final class DataTypeLong extends DataType<Long> {
         buffer.writeLong(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeLong(data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readLong();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Long fromPrimitive(long data) {
+        return data;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
@@ -22,6 +22,7 @@ import de.terrarier.netlistening.api.serialization.SerializationUtil;
 import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import de.terrarier.netlistening.internal.CancelReadSignal;
 import de.terrarier.netlistening.internal.CancelSignal;
 import de.terrarier.netlistening.util.ConversionUtil;
 import io.netty.buffer.ByteBuf;
@@ -48,14 +49,17 @@ public final class DataTypeObject extends DataType<Object> {
             if (length == 0) { // Occurs when an object can't get serialized properly.
                 return SERIALIZATION_ERROR;
             }
-            final byte[] data = new byte[]{0x8, 0x0, 0x0, 0x0, 0x0};
-            ConversionUtil.intToBytes(data, 1, length);
-            final InvalidDataEvent event = new InvalidDataEvent(connection,
-                    InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
-
-            if (application.getEventManager().callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE,
-                    event)) {
-                return SERIALIZATION_ERROR;
+            final EventManager eventManager = application.getEventManager();
+            // The event is only created if anybody is listening.
+            if (eventManager.hasListeners(ListenerType.INVALID_DATA)) {
+                final byte[] data = new byte[]{0x8, 0x0, 0x0, 0x0, 0x0};
+                ConversionUtil.intToBytes(data, 1, length);
+                final InvalidDataEvent event = new InvalidDataEvent(connection,
+                        InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
+
+                if (eventManager.callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE, event)) {
+                    return SERIALIZATION_ERROR;
+                }
             }
 
             throw new IllegalStateException("Received a malicious object of length " + length + '.');
@@ -77,4 +81,9 @@ public final class DataTypeObject extends DataType<Object> {
         SerializationUtil.serialize(application, buffer, data);
     }
 
+    @Override
+    protected void skip(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        skipLengthPrefixed(buffer);
+    }
+
 }
@@ -43,4 +43,25 @@ public final class DataTypeShort extends DataType<Short> {
         buffer.writeShort(data);
     }
 
+    @Override
+    protected void writePrimitive(@AssumeNotNull ByteBuf buffer, long data) {
+        buffer.writeShort((int) data);
+    }
+
+    @Override
+    protected long readPrimitive(@AssumeNotNull ByteBuf buffer) {
+        return buffer.readShort();
+    }
+
+    @AssumeNotNull
+    @Override
+    public Short fromPrimitive(long data) {
+        return (short) data;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return true;
+    }
+
 }
@@ -48,14 +48,17 @@ public final class DataTypeString extends DataType<String> {
             if (length == 0) {
                 return EMPTY_STRING;
             }
-            final byte[] data = new byte[]{0x7, 0x0, 0x0, 0x0, 0x0};
-            ConversionUtil.intToBytes(data, 1, length);
-            final InvalidDataEvent event = new InvalidDataEvent(connection,
-                    InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
+            final EventManager eventManager = application.getEventManager();
+            // The event is only created if anybody is listening.
+            if (eventManager.hasListeners(ListenerType.INVALID_DATA)) {
+                final byte[] data = new byte[]{0x7, 0x0, 0x0, 0x0, 0x0};
+                ConversionUtil.intToBytes(data, 1, length);
+                final InvalidDataEvent event = new InvalidDataEvent(connection,
+                        InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data);
 
-            if (application.getEventManager().callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE,
-                    event)) {
-                return EMPTY_STRING;
+                if (eventManager.callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE, event)) {
+                    return EMPTY_STRING;
+                }
             }
 
             throw new IllegalStateException("Received a malicious string of length " + length + '.');
@@ -74,4 +77,9 @@ public final class DataTypeString extends DataType<String> {
                 application.getBuffer());
     }
 
+    @Override
+    protected void skip(@AssumeNotNull ByteBuf buffer) throws CancelReadSignal {
+        skipLengthPrefixed(buffer);
+    }
+
 }
@@ -17,21 +17,26 @@ package de.terrarier.netlistening.impl;
 
 import de.terrarier.netlistening.Application;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.PreparedPacket;
 import de.terrarier.netlistening.api.compression.CompressionSetting;
 import de.terrarier.netlistening.api.encryption.EncryptionSetting;
 import de.terrarier.netlistening.api.event.*;
 import de.terrarier.netlistening.api.serialization.JavaIoSerializationProvider;
 import de.terrarier.netlistening.api.serialization.SerializationProvider;
+import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.internal.AssumeNotNull;
 import de.terrarier.netlistening.network.PacketCache;
 import de.terrarier.netlistening.network.PacketDataDecoder;
 import de.terrarier.netlistening.network.PacketDataEncoder;
 import de.terrarier.netlistening.network.TimeOutHandler;
 import de.terrarier.netlistening.util.UDS;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
@@ -39,9 +44,11 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 
+import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositive;
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZero;
 
 /**
@@ -50,16 +57,32 @@ import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZ
  */
 public abstract class ApplicationImpl implements Application {
 
+    private static final LengthFieldPrepender LENGTH_FIELD_PREPENDER = new LengthFieldPrepender(4);
     final PacketCache cache = new PacketCache();
     final DataHandler handler = new DataHandler();
     final EventManager eventManager = new EventManager(handler);
     Charset stringEncoding = StandardCharsets.UTF_8;
     int buffer = 256;
+    ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
     EncryptionSetting encryptionSetting;
     CompressionSetting compressionSetting;
     SerializationProvider serializationProvider;
+    boolean lengthPrefixedFrames;
+    boolean lazyDecoding;
+    int flushConsolidation;
+    int workerThreads;
+    Executor listenerExecutor;
     Thread worker;
-    EventLoopGroup group = UDS.eventLoopGroup();
+    EventLoopGroup group;
+
+    /**
+     * @return the executor which calls the decode listeners and if they
+     * are called on the event loop, null.
+     */
+    @ApiStatus.Internal
+    public final Executor getListenerExecutor() {
+        return listenerExecutor;
+    }
 
     /**
      * @see Application#getStringEncoding()
@@ -95,6 +118,16 @@ public abstract class ApplicationImpl implements Application {
         return buffer;
     }
 
+    /**
+     * @return the allocator which is used to allocate buffers which aren't
+     * bound to a specific channel.
+     */
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public final ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
     /**
      * @return the encryption settings which should be used to encrypt traffic
      * which was marked to get encrypted.
@@ -122,6 +155,23 @@ public abstract class ApplicationImpl implements Application {
         return serializationProvider;
     }
 
+    /**
+     * @return whether every frame sent by this application is prefixed
+     * with its length.
+     */
+    public final boolean isLengthPrefixedFrames() {
+        return lengthPrefixedFrames;
+    }
+
+    /**
+     * @return whether the data of received packets which doesn't represent
+     * primitives is only decoded when it is read.
+     */
+    @ApiStatus.Internal
+    public final boolean isLazyDecoding() {
+        return lazyDecoding;
+    }
+
     /**
      * @see Application#registerListener(Listener)
      */
@@ -147,6 +197,24 @@ public abstract class ApplicationImpl implements Application {
         eventManager.unregisterListener(listenerId);
     }
 
+    /**
+     * @see Application#getEstimatedPacketSizes()
+     */
+    @ApiStatus.Experimental
+    @AssumeNotNull
+    @Override
+    public final Map<List<DataType<?>>, Integer> getEstimatedPacketSizes() {
+        final Map<List<DataType<?>>, Integer> sizeHints = new HashMap<>();
+        if (getCaching() == PacketCaching.INDIVIDUAL) {
+            for (ConnectionImpl connection : getConnectionsRaw()) {
+                connection.getCache().collectSizeHints(sizeHints);
+            }
+        } else {
+            cache.collectSizeHints(sizeHints);
+        }
+        return sizeHints;
+    }
+
     @ApiStatus.Internal
     @AssumeNotNull
     public final EventManager getEventManager() {
@@ -159,7 +227,7 @@ public abstract class ApplicationImpl implements Application {
 
     ConnectionImpl prepareConnectionInitially(@AssumeNotNull Channel channel, long timeout,
                                               @AssumeNotNull Map<ChannelOption<?>, Object> options,
-                                              ExecutorService delayedExecutor, int maxFrameSize) {
+                                              int maxFrameSize) {
         if (eventManager.callEvent(ListenerType.PRE_INIT, EventManager.CancelAction.INTERRUPT,
                 new ConnectionPreInitEvent(channel))) {
             channel.close();
@@ -171,6 +239,12 @@ public abstract class ApplicationImpl implements Application {
         final ChannelPipeline pipeline = channel.pipeline();
         final boolean keepAlive = timeout > 0;
 
+        if (flushConsolidation > 0) {
+            // Consolidating flushes which are performed while data is read or within the same
+            // tick of the event loop.
+            pipeline.addFirst(FLUSH_CONSOLIDATION, new FlushConsolidationHandler(flushConsolidation, true));
+        }
+
         if (keepAlive) {
             pipeline.addLast(TIMEOUT_HANDLER,
                     new TimeOutHandler(this, connection, timeout));
@@ -178,10 +252,25 @@ public abstract class ApplicationImpl implements Application {
 
         pipeline.addLast(DECODER, new PacketDataDecoder(this, handler, connection,
                 maxFrameSize, keepAlive))
-                .addAfter(DECODER, ENCODER, new PacketDataEncoder(this, connection, delayedExecutor));
+                .addAfter(DECODER, ENCODER, new PacketDataEncoder(this, connection));
+        if (lengthPrefixedFrames) {
+            addFramePrepender(pipeline);
+        }
         return connection;
     }
 
+    static void checkComplete(@AssumeNotNull PreparedPacket packet) {
+        if (!packet.isComplete()) {
+            throw new IllegalArgumentException("Tried to send a packet which wasn't filled completely!");
+        }
+    }
+
+    static void addFramePrepender(@AssumeNotNull ChannelPipeline pipeline) {
+        // The prepender has to be located between the encoder and the head of the pipeline
+        // in order to process all outbound frames (including raw ones).
+        pipeline.addBefore(ENCODER, FRAME_PREPENDER, LENGTH_FIELD_PREPENDER);
+    }
+
     @ApiStatus.Internal
     static abstract class Builder<A extends ApplicationImpl, B extends Builder<A, B>> extends Application.Builder<A, B> {
 
@@ -240,6 +329,63 @@ public abstract class ApplicationImpl implements Application {
             return (B) this;
         }
 
+        /**
+         * @see Application.Builder#allocator(ByteBufAllocator)
+         */
+        @SuppressWarnings("unchecked")
+        @AssumeNotNull
+        public final B allocator(@NotNull ByteBufAllocator allocator) {
+            validate();
+            application.allocator = allocator;
+            options.put(ChannelOption.ALLOCATOR, allocator);
+            return (B) this;
+        }
+
+        /**
+         * @see Application.Builder#lazyDecoding(boolean)
+         */
+        @SuppressWarnings("unchecked")
+        @AssumeNotNull
+        public final B lazyDecoding(boolean enabled) {
+            validate();
+            application.lazyDecoding = enabled;
+            return (B) this;
+        }
+
+        /**
+         * @see Application.Builder#flushConsolidation(int)
+         */
+        @SuppressWarnings("unchecked")
+        @AssumeNotNull
+        public final B flushConsolidation(int explicitFlushAfterFlushes) {
+            validate();
+            application.flushConsolidation = checkPositiveOrZero(explicitFlushAfterFlushes,
+                    "explicitFlushAfterFlushes");
+            return (B) this;
+        }
+
+        /**
+         * @see Application.Builder#workerThreads(int)
+         */
+        @SuppressWarnings("unchecked")
+        @AssumeNotNull
+        public final B workerThreads(int threads) {
+            validate();
+            application.workerThreads = checkPositive(threads, "threads");
+            return (B) this;
+        }
+
+        /**
+         * @see Application.Builder#listenerExecutor(Executor)
+         */
+        @SuppressWarnings("unchecked")
+        @AssumeNotNull
+        public final B listenerExecutor(@NotNull Executor executor) {
+            validate();
+            application.listenerExecutor = executor;
+            return (B) this;
+        }
+
         /**
          * @see Application.Builder#build()
          */
@@ -250,6 +396,7 @@ public abstract class ApplicationImpl implements Application {
             if (application.serializationProvider == null) {
                 application.serializationProvider = new JavaIoSerializationProvider();
             }
+            application.group = UDS.eventLoopGroup(application.workerThreads);
             build0();
             return application;
         }
@@ -20,6 +20,7 @@ import de.terrarier.netlistening.Client;
 import de.terrarier.netlistening.Connection;
 import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.PreparedPacket;
 import de.terrarier.netlistening.api.compression.CompressionSetting;
 import de.terrarier.netlistening.api.encryption.EncryptionSetting;
 import de.terrarier.netlistening.api.encryption.ServerKey;
@@ -56,7 +57,7 @@ public final class ClientImpl extends ApplicationImpl implements Client {
     private Channel channel;
     private ConnectionImpl connection;
     private volatile boolean receivedHandshake;
-    private List<DataContainer> preConnectData;
+    private List<Object> preConnectData;
     private HashingAlgorithm serverKeyHashing = HashingAlgorithm.SHA_256;
     private ServerKey serverKey;
 
@@ -77,12 +78,13 @@ public final class ClientImpl extends ApplicationImpl implements Client {
                 .handler(new ChannelInitializer<Channel>() {
                     @Override
                     protected void initChannel(@AssumeNotNull Channel channel) {
-                        final ConnectionImpl connection = prepareConnectionInitially(channel, timeout, options, null,
+                        final ConnectionImpl connection = prepareConnectionInitially(channel, timeout, options,
                                 Integer.MAX_VALUE);
                         if (proxy != null) {
                             channel.pipeline().addFirst(PROXY_HANDLER, proxy.newHandler());
                         }
 
+                        ClientImpl.this.channel = channel;
                         ClientImpl.this.connection = connection;
                         eventManager.callEvent(ListenerType.POST_INIT, new ConnectionPostInitEvent(connection));
                     }
@@ -91,9 +93,17 @@ public final class ClientImpl extends ApplicationImpl implements Client {
 
     @ApiStatus.Internal
     public void receiveHandshake(@AssumeNotNull CompressionSetting compressionSetting, Charset stringEncoding,
-                                 EncryptionSetting encryptionSetting, byte[] serverKey) {
+                                 EncryptionSetting encryptionSetting, byte[] serverKey,
+                                 boolean lengthPrefixedFrames) {
         this.compressionSetting = compressionSetting;
 
+        if (lengthPrefixedFrames && !this.lengthPrefixedFrames) {
+            this.lengthPrefixedFrames = true;
+            // The handshake gets processed on the event loop, so every frame which is written after this
+            // point (including the encryption init) passes the prepender.
+            addFramePrepender(connection.getChannel().pipeline());
+        }
+
         if (stringEncoding != null) {
             this.stringEncoding = stringEncoding;
         }
@@ -112,18 +122,19 @@ public final class ClientImpl extends ApplicationImpl implements Client {
 
     @ApiStatus.Internal
     public void pushCachedData() {
-        if (receivedHandshake) {
-            throw new IllegalStateException("An internal error occurred - duplicate push request");
-        }
-        receivedHandshake = true;
-
         synchronized (this) {
+            if (receivedHandshake) {
+                throw new IllegalStateException("An internal error occurred - duplicate push request");
+            }
+            // The flag is set while holding the lock, so no data can get queued after the queue was drained.
+            receivedHandshake = true;
             if (preConnectData != null) {
                 final ChannelPromise voidPromise = channel.voidPromise();
-                for (Iterator<DataContainer> iterator = preConnectData.iterator(); iterator.hasNext(); ) {
-                    channel.writeAndFlush(iterator.next(), voidPromise);
+                for (Iterator<Object> iterator = preConnectData.iterator(); iterator.hasNext(); ) {
+                    channel.write(iterator.next(), voidPromise);
                     iterator.remove();
                 }
+                channel.flush();
                 preConnectData = null;
             }
         }
@@ -139,14 +150,59 @@ public final class ClientImpl extends ApplicationImpl implements Client {
      */
     @Override
     public void sendData(@NotNull DataContainer data) {
+        // Lazily decoded data can't be decoded anymore once it gets encoded.
+        sendData0(data.decodeAll());
+    }
+
+    /**
+     * @see Application#sendBatch(Collection)
+     */
+    @Override
+    public void sendBatch(@NotNull Collection<DataContainer> data) {
+        for (DataContainer container : data) {
+            container.decodeAll();
+        }
         if (!receivedHandshake) {
             synchronized (this) {
-                if (preConnectData == null) {
-                    preConnectData = new ArrayList<>();
+                // The push request may have been processed while we were waiting for the lock.
+                if (!receivedHandshake) {
+                    if (preConnectData == null) {
+                        preConnectData = new ArrayList<>(data.size());
+                    }
+                    preConnectData.addAll(data);
+                    return;
+                }
+            }
+        }
+
+        final ChannelPromise voidPromise = channel.voidPromise();
+        for (DataContainer container : data) {
+            channel.write(container, voidPromise);
+        }
+        channel.flush();
+    }
+
+    /**
+     * @see Application#sendData(PreparedPacket)
+     */
+    @Override
+    public void sendData(@NotNull PreparedPacket packet) {
+        checkComplete(packet);
+        sendData0(packet);
+    }
+
+    private void sendData0(@AssumeNotNull Object data) {
+        if (!receivedHandshake) {
+            synchronized (this) {
+                // The push request may have been processed while we were waiting for the lock.
+                if (!receivedHandshake) {
+                    if (preConnectData == null) {
+                        preConnectData = new ArrayList<>();
+                    }
+                    preConnectData.add(data);
+                    return;
                 }
-                preConnectData.add(data);
             }
-            return;
         }
 
         channel.writeAndFlush(data, channel.voidPromise());
@@ -351,7 +407,8 @@ public final class ClientImpl extends ApplicationImpl implements Client {
                     }
                 }
                 try {
-                    application.channel = channelFuture.sync().syncUninterruptibly().channel();
+                    // The channel itself is already known once it is initialized.
+                    channelFuture.sync();
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
@@ -21,30 +21,38 @@ import de.terrarier.netlistening.Connection;
 import de.terrarier.netlistening.Server;
 import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.PreparedPacket;
+import de.terrarier.netlistening.api.compression.CompressionContext;
+import de.terrarier.netlistening.api.compression.CompressionSetting;
 import de.terrarier.netlistening.api.encryption.EncryptionOptions;
 import de.terrarier.netlistening.api.encryption.SymmetricEncryptionContext;
 import de.terrarier.netlistening.api.encryption.SymmetricEncryptionUtil;
+import de.terrarier.netlistening.api.encryption.hash.HashUtil;
+import de.terrarier.netlistening.api.encryption.hash.HashingAlgorithm;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.internal.*;
 import de.terrarier.netlistening.network.PacketCache;
 import de.terrarier.netlistening.network.PacketIdTranslationCache;
 import de.terrarier.netlistening.network.PacketSkeleton;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.util.internal.PlatformDependent;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import java.net.InetSocketAddress;
-import java.util.ArrayList;
-import java.util.List;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
-
-import static de.terrarier.netlistening.util.ByteBufUtilExtension.correctSize;
-import static de.terrarier.netlistening.util.ByteBufUtilExtension.getBytesAndRelease;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * @author Terrarier2111
@@ -53,17 +61,25 @@ import static de.terrarier.netlistening.util.ByteBufUtilExtension.getBytesAndRel
 public final class ConnectionImpl implements Connection {
 
     static final AtomicInteger ID = new AtomicInteger();
+    private static final AtomicReferenceFieldUpdater<ConnectionImpl, DataSendState> DATA_SEND_STATE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ConnectionImpl.class, DataSendState.class, "dataSendState");
     private final ApplicationImpl application;
     private final Channel channel;
     private final int id = ID.getAndIncrement();
     private final PacketCache cache;
+    private final Executor listenerExecutor;
     private PacketIdTranslationCache packetIdTranslationCache;
+    // Only written by the event loop of the connection's channel.
     private volatile boolean receivedPacket;
     private volatile DataSendState dataSendState = DataSendState.IDLE;
-    private ByteBuf preConnectBuffer;
-    private List<DataContainer> preConnectSendQueue;
+    // Both queues are filled by arbitrary threads and only drained on the channel's event loop.
+    private final Queue<ByteBuf> pendingBuffers = PlatformDependent.newMpscQueue();
+    private final Queue<Object> pendingData = PlatformDependent.newMpscQueue();
     private SymmetricEncryptionContext encryptionContext;
     private byte[] hmacKey;
+    // The mac is only used by the event loop of the connection, so it can be reused for all packets.
+    private Mac hmac;
+    private CompressionContext compressionContext;
     // TODO: Improve and test delayed data sending mechanics.
 
     ConnectionImpl(@AssumeNotNull ApplicationImpl application, @AssumeNotNull Channel channel) {
@@ -77,6 +93,9 @@ public final class ConnectionImpl implements Connection {
         if (application instanceof Server) {
             packetIdTranslationCache = new PacketIdTranslationCache(this, application);
         }
+        final Executor executor = application.getListenerExecutor();
+        // Every connection gets its own serial view of the executor in order to preserve the order of its data.
+        listenerExecutor = executor != null ? new SerialExecutor(executor) : null;
     }
 
     /**
@@ -88,22 +107,54 @@ public final class ConnectionImpl implements Connection {
             application.sendData(data);
             return;
         }
-        final boolean connected = isConnected();
-        checkReceived();
-        if (connected && dataSendState.isAtLeast(DataSendState.SENDING)) {
-            if (dataSendState == DataSendState.FINISHED) {
-                channel.writeAndFlush(data, channel.voidPromise());
-            } else {
-                // TODO: Handle stuff incoming before!
-            }
+        // Lazily decoded data can't be decoded anymore once it gets encoded.
+        sendData0(data.decodeAll());
+    }
+
+    /**
+     * @see Connection#sendData(PreparedPacket)
+     */
+    @Override
+    public void sendData(@NotNull PreparedPacket packet) {
+        if (application instanceof Client) {
+            application.sendData(packet);
+            return;
+        }
+        ApplicationImpl.checkComplete(packet);
+        sendData0(packet);
+    }
+
+    private void sendData0(@AssumeNotNull Object data) {
+        // Data which was queued before has to be sent first in order to preserve the order of the data.
+        if (dataSendState == DataSendState.FINISHED && pendingData.isEmpty()) {
+            channel.writeAndFlush(data, channel.voidPromise());
         } else {
-            synchronized (this) {
-                if (preConnectSendQueue == null) {
-                    preConnectSendQueue = new ArrayList<>();
-                }
+            pendingData.offer(data);
+            releasePendingIfFinished();
+        }
+    }
 
-                preConnectSendQueue.add(data);
+    /**
+     * @see Connection#sendBatch(Collection)
+     */
+    @Override
+    public void sendBatch(@NotNull Collection<DataContainer> data) {
+        if (application instanceof Client) {
+            application.sendBatch(data);
+            return;
+        }
+        for (DataContainer container : data) {
+            container.decodeAll();
+        }
+        if (dataSendState == DataSendState.FINISHED && pendingData.isEmpty()) {
+            final ChannelPromise voidPromise = channel.voidPromise();
+            for (DataContainer container : data) {
+                channel.write(container, voidPromise);
             }
+            channel.flush();
+        } else {
+            pendingData.addAll(data);
+            releasePendingIfFinished();
         }
     }
 
@@ -149,6 +200,14 @@ public final class ConnectionImpl implements Connection {
         return channel.isActive() || channel.isOpen();
     }
 
+    /**
+     * @return whether data can be written to the channel of this connection directly.
+     */
+    @ApiStatus.Internal
+    public boolean isReady() {
+        return dataSendState == DataSendState.FINISHED && pendingData.isEmpty() && isConnected();
+    }
+
     @AssumeNotNull
     @Deprecated
     public Application getApplication() {
@@ -189,7 +248,7 @@ public final class ConnectionImpl implements Connection {
      */
     public void setSymmetricKey(@NotNull EncryptionOptions options, byte @NotNull [] symmetricKey) {
         final SecretKey secretKey = SymmetricEncryptionUtil.readSecretKey(symmetricKey, options);
-        encryptionContext = new SymmetricEncryptionContext(options, secretKey);
+        encryptionContext = new SymmetricEncryptionContext(options, secretKey, application instanceof Server);
     }
 
     /**
@@ -201,7 +260,7 @@ public final class ConnectionImpl implements Connection {
      */
     public void setSymmetricKey(@NotNull ApplicationImpl application, @NotNull SecretKey secretKey) {
         final EncryptionOptions options = application.getEncryptionSetting().getSymmetricSetting();
-        encryptionContext = new SymmetricEncryptionContext(options, secretKey);
+        encryptionContext = new SymmetricEncryptionContext(options, secretKey, application instanceof Server);
     }
 
     /**
@@ -219,6 +278,46 @@ public final class ConnectionImpl implements Connection {
      */
     public void setHmacKey(byte @NotNull [] key) {
         hmacKey = key;
+        hmac = null;
+    }
+
+    /**
+     * @param algorithm the hashing algorithm which should be used to calculate hmacs.
+     * @return the mac which is used to calculate the hmacs of data sent to/received from this connection.
+     */
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public Mac getHmac(@AssumeNotNull HashingAlgorithm algorithm) throws NoSuchAlgorithmException,
+            InvalidKeyException {
+        if (hmac == null) {
+            hmac = HashUtil.createHMAC(hmacKey, algorithm);
+        }
+        return hmac;
+    }
+
+    /**
+     * @return the context which is used to compress data sent to/received from this connection.
+     */
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public CompressionContext getCompressionContext() {
+        if (compressionContext == null) {
+            final CompressionSetting compressionSetting = application.getCompressionSetting();
+            compressionContext = new CompressionContext(compressionSetting.getPayloadCompressionDictionary(),
+                    compressionSetting.isPayloadCompressionContextTakeover());
+        }
+        return compressionContext;
+    }
+
+    /**
+     * Releases the resources used to compress data sent to/received from this connection.
+     */
+    @ApiStatus.Internal
+    public void releaseCompressionContext() {
+        if (compressionContext != null) {
+            compressionContext.release();
+            compressionContext = null;
+        }
     }
 
     /**
@@ -254,142 +353,121 @@ public final class ConnectionImpl implements Connection {
         return packetIdTranslationCache;
     }
 
+    /**
+     * @return the executor which calls the decode listeners for data received from
+     * this connection and if the listeners are called on the event loop, null.
+     */
+    @ApiStatus.Internal
+    public Executor getListenerExecutor() {
+        return listenerExecutor;
+    }
+
     private void checkReceived() {
+        // The handshake is only written by the event loop once the channel is active, so it always
+        // precedes everything else which gets written to the channel.
         if (!receivedPacket) {
             receivedPacket = true;
-            final boolean connected = isConnected();
-
             final DataTypeInternalPayload dtip = DataType.getDTIP();
-            final PacketCaching caching = application.getCaching();
-            synchronized (this) {
-                final ByteBuf buffer;
-                if (connected) {
-                    buffer = Unpooled.buffer();
-                } else {
-                    if (preConnectBuffer == null) {
-                        preConnectBuffer = Unpooled.buffer();
-                    }
-                    buffer = preConnectBuffer;
-                }
-                buffer.writeInt(0x0);
-                dtip.write(application, buffer, InternalPayload.HANDSHAKE);
-                if (caching == PacketCaching.GLOBAL) {
-                    final Map<Integer, PacketSkeleton> packets = cache.getPackets();
-                    final int packetsSize = packets.size();
-                    if (packetsSize > 2) {
-                        for (int id = 5; id < packetsSize + 3; id++) { // the number added here is calculated via: 5 - number of default packets
-                            final DataType<?>[] data = packets.get(id).getData();
-                            dtip.write(application, buffer, new InternalPayloadRegisterPacket(id, data));
-                        }
+            final ByteBuf buffer = channel.alloc().buffer();
+            buffer.writeInt(0x0);
+            dtip.write(application, buffer, InternalPayload.HANDSHAKE);
+            if (application.getCaching() == PacketCaching.GLOBAL) {
+                final Map<Integer, PacketSkeleton> packets = cache.getPackets();
+                final int packetsSize = packets.size();
+                if (packetsSize > 3) {
+                    for (int id = 5; id < packetsSize + 2; id++) { // the number added here is calculated via: 5 - number of default packets
+                        final DataType<?>[] data = packets.get(id).getData();
+                        dtip.write(application, buffer, new InternalPayloadRegisterPacket(id, data));
                     }
                 }
-                if (connected) {
-                    channel.writeAndFlush(buffer, channel.voidPromise());
-                }
             }
+            channel.writeAndFlush(buffer, channel.voidPromise());
         }
     }
 
+    /**
+     * Has to be called on the event loop of the connection's channel.
+     */
     @ApiStatus.Internal
     public void check() {
-        if (!dataSendState.isAtLeast(DataSendState.SENDING)) {
-            dataSendState = DataSendState.SENDING;
-
-            synchronized (this) {
-                if (preConnectBuffer != null && preConnectBuffer.isReadable()) {
-                    channel.writeAndFlush(preConnectBuffer, channel.voidPromise());
-                    preConnectBuffer = null;
-                } else {
-                    // Writing the init data to the channel (without hitting the pre connect buffer).
-                    checkReceived();
-                }
+        if (DATA_SEND_STATE_UPDATER.compareAndSet(this, DataSendState.IDLE, DataSendState.SENDING)) {
+            // Writing the init data to the channel if it wasn't written already.
+            checkReceived();
+            if (writeQueued(pendingBuffers)) {
+                channel.flush();
             }
 
             if (application.getEncryptionSetting() == null) {
                 prepare();
             } else {
-                dataSendState = DataSendState.WAITING_FOR_FINISH;
+                DATA_SEND_STATE_UPDATER.compareAndSet(this, DataSendState.SENDING, DataSendState.WAITING_FOR_FINISH);
             }
         }
     }
 
     @ApiStatus.Internal
     public void writeToInitialBuffer(@AssumeNotNull ByteBuf buffer) {
-        final DataSendState dataSendState = this.dataSendState; // caching volatile field get result
-        if (!dataSendState.isAtLeast(DataSendState.SENDING)) {
-            checkReceived();
-            transferData(buffer);
-        } else if (!trySend(buffer)) {
-            // TODO: Test logic to send data delayed!
-            if (dataSendState != DataSendState.WAITING_FOR_FINISH) { // Check if the connection isn't in the waiting state and therefore
-                // currently it isn't waiting for a response from the other end of the connection.
-                while (this.dataSendState != DataSendState.WAITING_FOR_FINISH) {
-                    if (trySend(buffer)) {
-                        return;
-                    }
-                }
-            }
-            synchronized (this) {
-                if (preConnectBuffer == null) {
-                    preConnectBuffer = Unpooled.buffer();
-                }
-            }
-            transferData(buffer);
-        }
-    }
-
-    private boolean trySend(@AssumeNotNull ByteBuf buffer) {
-        final DataSendState dataSendState = this.dataSendState; // caching volatile field get result
-        if (dataSendState.isAtLeast(DataSendState.FINISHING)) {
-            if (dataSendState == DataSendState.FINISHING) {
-                // We are waiting until the execution of the prepare method has finished.
-                while (this.dataSendState != DataSendState.FINISHED);
-            }
+        if (dataSendState == DataSendState.FINISHED && pendingBuffers.isEmpty()) {
             channel.writeAndFlush(buffer, channel.voidPromise());
-            return true;
-        }
-        return false;
-    }
-
-    private void transferData(@AssumeNotNull ByteBuf buffer) {
-        final int readable = buffer.readableBytes();
-        final byte[] bytes = getBytesAndRelease(buffer);
-        final int applicationBuffer = application.getBuffer();
-        synchronized (this) {
-            correctSize(preConnectBuffer, readable, applicationBuffer);
-            preConnectBuffer.writeBytes(bytes);
+        } else {
+            pendingBuffers.offer(buffer);
+            releasePendingIfFinished();
         }
     }
 
+    /**
+     * Has to be called on the event loop of the connection's channel.
+     */
     @ApiStatus.Internal
     public void prepare() {
-        dataSendState = DataSendState.FINISHING;
-        final ChannelPromise voidPromise = channel.voidPromise();
-        synchronized (this) {
-            if (preConnectSendQueue != null) {
-                final List<DataContainer> sendQueue = preConnectSendQueue;
-                preConnectSendQueue = null;
-                final int sendQueueSize = sendQueue.size();
-                for (int i = 0; i < sendQueueSize; i++) {
-                    final DataContainer data = sendQueue.get(i);
-                    channel.writeAndFlush(data, voidPromise);
-                }
-                sendQueue.clear();
+        DataSendState state;
+        do {
+            state = dataSendState;
+            if (state.isAtLeast(DataSendState.FINISHING)) {
+                return;
             }
-        }
+        } while (!DATA_SEND_STATE_UPDATER.compareAndSet(this, state, DataSendState.FINISHING));
 
         final int lowSize = InternalUtil.singleOctetIntSize(application);
-        final ByteBuf buffer = Unpooled.buffer(lowSize + 1 + lowSize);
+        final ByteBuf buffer = channel.alloc().buffer(lowSize + 1 + lowSize);
         DataType.getDTIP().write(application, buffer, InternalPayload.PUSH_REQUEST);
-        channel.writeAndFlush(buffer, voidPromise);
-        // TODO: IMPORTANT: Check if we should write the preConnectBuffer first.
-        synchronized (this) {
-            if (preConnectBuffer != null) {
-                channel.writeAndFlush(preConnectBuffer, voidPromise);
-                preConnectBuffer = null;
+        channel.write(buffer, channel.voidPromise());
+        // The pending buffers may contain packet registrations which the pending data depends on.
+        writeQueued(pendingBuffers);
+        writeQueued(pendingData);
+        channel.flush();
+        dataSendState = DataSendState.FINISHED;
+        // Writing everything which got queued while the push request was written.
+        writePending();
+    }
+
+    private void releasePendingIfFinished() {
+        // The state may have changed while the data was queued, in which case nobody else is going to drain the queues.
+        if (dataSendState == DataSendState.FINISHED) {
+            final EventLoop eventLoop = channel.eventLoop();
+            if (eventLoop.inEventLoop()) {
+                writePending();
+            } else {
+                eventLoop.execute(this::writePending);
             }
         }
-        dataSendState = DataSendState.FINISHED;
+    }
+
+    private void writePending() {
+        if (writeQueued(pendingBuffers) | writeQueued(pendingData)) {
+            channel.flush();
+        }
+    }
+
+    private boolean writeQueued(@AssumeNotNull Queue<?> queue) {
+        final ChannelPromise voidPromise = channel.voidPromise();
+        boolean written = false;
+        Object data;
+        while ((data = queue.poll()) != null) {
+            channel.write(data, voidPromise);
+            written = true;
+        }
+        return written;
     }
 
     private enum DataSendState {
@@ -18,22 +18,32 @@ package de.terrarier.netlistening.impl;
 import de.terrarier.netlistening.Application;
 import de.terrarier.netlistening.Connection;
 import de.terrarier.netlistening.Server;
+import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.PreparedPacket;
 import de.terrarier.netlistening.api.compression.CompressionSetting;
 import de.terrarier.netlistening.api.encryption.EncryptionSetting;
 import de.terrarier.netlistening.api.encryption.SymmetricEncryptionUtil;
+import de.terrarier.netlistening.api.encryption.hash.HmacApplicationPolicy;
 import de.terrarier.netlistening.api.encryption.hash.HmacSetting;
 import de.terrarier.netlistening.api.event.ConnectionPostInitEvent;
 import de.terrarier.netlistening.api.event.ListenerType;
 import de.terrarier.netlistening.api.serialization.SerializationUtil;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import de.terrarier.netlistening.internal.InternalPayloadRegisterPacket;
+import de.terrarier.netlistening.network.PacketCache;
+import de.terrarier.netlistening.network.PacketDataEncoder;
+import de.terrarier.netlistening.network.PacketSkeleton;
 import de.terrarier.netlistening.util.UDS;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
@@ -43,7 +53,9 @@ import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositive;
 import static de.terrarier.netlistening.util.ObjectUtilFallback.checkPositiveOrZero;
 
 /**
@@ -56,19 +68,12 @@ public final class ServerImpl extends ApplicationImpl implements Server {
             1024 * 1024 * 16); // 16 MB
 
     private final Map<Channel, ConnectionImpl> connections = new ConcurrentHashMap<>();
+    // Indexing the connections by their id as well in order to avoid scanning all connections on lookups.
+    private final ConnectionTable connectionsById = new ConnectionTable();
+    private final Set<Connection> connectionsView = new ConnectionsView();
     private PacketCaching caching = PacketCaching.NONE;
-    private ScheduledExecutorService delayedExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
-
-        final ThreadFactory factory = Executors.defaultThreadFactory();
-
-        @AssumeNotNull
-        @Override
-        public Thread newThread(@NotNull Runnable runnable) {
-            final Thread thread = factory.newThread(runnable);
-            thread.setDaemon(true);
-            return thread;
-        }
-    });
+    private EventLoopGroup bossGroup;
+    private List<Channel> serverChannels;
 
     @AssumeNotNull
     private ServerBootstrap start(long timeout, @AssumeNotNull Map<ChannelOption<?>, Object> options,
@@ -78,13 +83,13 @@ public final class ServerImpl extends ApplicationImpl implements Server {
         }
         SerializationUtil.init(this, serializationProvider);
 
-        return new ServerBootstrap().group(group)
+        return new ServerBootstrap().group(bossGroup != null ? bossGroup : group, group)
                 .channelFactory(UDS.serverChannelFactory(uds))
                 .childHandler(new ChannelInitializer<Channel>() {
                     @Override
                     protected final void initChannel(@AssumeNotNull Channel channel) {
                         final ConnectionImpl connection = prepareConnectionInitially(channel, timeout, options,
-                                delayedExecutor, maxFrameSize);
+                                maxFrameSize);
 
                         if (encryptionSetting != null) {
                             try {
@@ -105,6 +110,7 @@ public final class ServerImpl extends ApplicationImpl implements Server {
                         }
 
                         connections.put(channel, connection);
+                        connectionsById.put(connection);
                         eventManager.callEvent(ListenerType.POST_INIT, new ConnectionPostInitEvent(connection));
                     }
                 });
@@ -132,16 +138,7 @@ public final class ServerImpl extends ApplicationImpl implements Server {
      */
     @Override
     public Connection getConnection(int id) {
-        if (checkPositiveOrZero(id, "id") > ConnectionImpl.ID.get()) {
-            return null;
-        }
-
-        for (Connection connection : connections.values()) {
-            if (connection.getId() == id) {
-                return connection;
-            }
-        }
-        return null;
+        return connectionsById.get(checkPositiveOrZero(id, "id"));
     }
 
     /**
@@ -158,27 +155,31 @@ public final class ServerImpl extends ApplicationImpl implements Server {
             connection.disconnect0();
             iterator.remove();
         }
+        connectionsById.clear();
+        // The server channels are closed before the event loops are shut down gracefully, so the
+        // address is released once this method returns.
+        for (Channel channel : serverChannels) {
+            final ChannelFuture closeFuture = channel.close();
+            if (!channel.eventLoop().inEventLoop()) {
+                closeFuture.awaitUninterruptibly();
+            }
+        }
+        serverChannels = null;
         handler.unregisterListeners();
         group.shutdownGracefully();
         group = null;
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+            bossGroup = null;
+        }
         worker.interrupt();
         worker = null;
         cache.clear();
-        if (!delayedExecutor.isShutdown()) {
-            delayedExecutor.shutdown();
-            try {
-                if (!delayedExecutor.awaitTermination(250L, TimeUnit.MILLISECONDS)) {
-                    delayedExecutor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                delayedExecutor.shutdownNow();
-            }
-            delayedExecutor = null;
-        }
     }
 
     void disconnect0(@AssumeNotNull Connection connection) {
         connections.remove(connection.getChannel());
+        connectionsById.remove(connection.getId());
     }
 
     /**
@@ -186,18 +187,102 @@ public final class ServerImpl extends ApplicationImpl implements Server {
      */
     @Override
     public void sendData(@NotNull DataContainer data) {
+        // Lazily decoded data can't be decoded anymore once it gets encoded.
+        data.decodeAll();
+        if (caching == PacketCaching.GLOBAL && connections.size() > 1 && !requiresIndividualEncoding(data)) {
+            broadcast(data);
+            return;
+        }
         for (Connection connection : connections.values()) {
             connection.sendData(data);
         }
     }
 
+    private void broadcast(@AssumeNotNull DataContainer data) {
+        final List<DataComponent<?>> components = data.getData();
+        if (components.isEmpty()) {
+            throw new IllegalArgumentException("Tried to send an empty packet!");
+        }
+        final PacketCache cache = getCache();
+        final boolean[] notifier = new boolean[1];
+        final PacketSkeleton packet = cache.getOrRegisterPacket(notifier, components);
+        if (notifier[0]) {
+            // Registering the packet from this thread guarantees that every connection receives
+            // the registration before the data.
+            cache.broadcastRegister(this, new InternalPayloadRegisterPacket(packet.getId(), packet.getData()), null,
+                    null);
+            packet.register();
+        }
+        if (!packet.isRegistered()) {
+            // The packet is being registered through one of the connections.
+            for (Connection connection : connections.values()) {
+                connection.sendData(data);
+            }
+            return;
+        }
+
+        // All connections share the same packet cache, so the data only has to be encoded once.
+        ByteBuf buffer = null;
+        for (ConnectionImpl connection : connections.values()) {
+            if (!connection.isReady()) {
+                connection.sendData(data);
+                continue;
+            }
+            if (buffer == null) {
+                buffer = PacketDataEncoder.encodeShared(this, connection, data, packet);
+                if (buffer == null) {
+                    // The data couldn't get serialized.
+                    return;
+                }
+            }
+            final Channel channel = connection.getChannel();
+            channel.writeAndFlush(buffer.retainedDuplicate(), channel.voidPromise());
+        }
+        if (buffer != null) {
+            buffer.release();
+        }
+    }
+
+    private boolean requiresIndividualEncoding(@AssumeNotNull DataContainer data) {
+        // The compression context of a connection may only be used by its event loop.
+        if (data.isEncrypted() || compressionSetting.isPayloadCompression()) {
+            return true;
+        }
+        if (encryptionSetting == null) {
+            return false;
+        }
+        final HmacSetting hmacSetting = encryptionSetting.getHmacSetting();
+        return hmacSetting != null && hmacSetting.getApplicationPolicy() == HmacApplicationPolicy.ALL;
+    }
+
+    /**
+     * @see Application#sendBatch(Collection)
+     */
+    @Override
+    public void sendBatch(@NotNull Collection<DataContainer> data) {
+        for (Connection connection : connections.values()) {
+            connection.sendBatch(data);
+        }
+    }
+
+    /**
+     * @see Application#sendData(PreparedPacket)
+     */
+    @Override
+    public void sendData(@NotNull PreparedPacket packet) {
+        checkComplete(packet);
+        for (Connection connection : connections.values()) {
+            connection.sendData(packet);
+        }
+    }
+
     /**
      * @see Application#getConnections()
      */
     @AssumeNotNull
     @Override
     public Set<Connection> getConnections() {
-        return Collections.unmodifiableSet(new HashSet<>(connections.values()));
+        return connectionsView;
     }
 
     @AssumeNotNull
@@ -206,12 +291,116 @@ public final class ServerImpl extends ApplicationImpl implements Server {
         return connections.values();
     }
 
+    /**
+     * Maps the ids of connections to the connections without boxing them on lookups.
+     * The ids are handed out sequentially, so the table is split up into pages which are
+     * allocated once the first of their ids is used and released once all their connections were removed.
+     */
+    private static final class ConnectionTable {
+
+        private static final int PAGE_SHIFT = 10;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+        // Modifications are synchronized, so lookups don't have to lock.
+        private volatile AtomicReferenceArray<Page> pages = new AtomicReferenceArray<>(16);
+
+        ConnectionImpl get(int id) {
+            final AtomicReferenceArray<Page> pages = this.pages;
+            final int index = id >>> PAGE_SHIFT;
+            if (index >= pages.length()) {
+                return null;
+            }
+            final Page page = pages.get(index);
+            return page == null ? null : page.connections.get(id & PAGE_MASK);
+        }
+
+        synchronized void put(@AssumeNotNull ConnectionImpl connection) {
+            final int id = connection.getId();
+            final int index = id >>> PAGE_SHIFT;
+            AtomicReferenceArray<Page> pages = this.pages;
+            if (index >= pages.length()) {
+                final AtomicReferenceArray<Page> grown = new AtomicReferenceArray<>(
+                        Math.max(index + 1, pages.length() << 1));
+                for (int i = 0; i < pages.length(); i++) {
+                    grown.set(i, pages.get(i));
+                }
+                this.pages = pages = grown;
+            }
+            Page page = pages.get(index);
+            if (page == null) {
+                page = new Page();
+                pages.set(index, page);
+            }
+            if (page.connections.getAndSet(id & PAGE_MASK, connection) == null) {
+                page.size++;
+            }
+        }
+
+        synchronized void remove(int id) {
+            final AtomicReferenceArray<Page> pages = this.pages;
+            final int index = id >>> PAGE_SHIFT;
+            if (index >= pages.length()) {
+                return;
+            }
+            final Page page = pages.get(index);
+            if (page != null && page.connections.getAndSet(id & PAGE_MASK, null) != null && --page.size == 0) {
+                pages.set(index, null);
+            }
+        }
+
+        synchronized void clear() {
+            pages = new AtomicReferenceArray<>(16);
+        }
+
+        private static final class Page {
+
+            private final AtomicReferenceArray<ConnectionImpl> connections =
+                    new AtomicReferenceArray<>(PAGE_MASK + 1);
+            // Only accessed while holding the lock of the table.
+            private int size;
+
+        }
+
+    }
+
+    private final class ConnectionsView extends AbstractSet<Connection> {
+
+        @AssumeNotNull
+        @Override
+        public Iterator<Connection> iterator() {
+            final Iterator<ConnectionImpl> iterator = connections.values().iterator();
+            return new Iterator<Connection>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Connection next() {
+                    return iterator.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return connections.size();
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            return obj instanceof Connection && connections.get(((Connection) obj).getChannel()) == obj;
+        }
+
+    }
+
     @ApiStatus.Internal
     public static final class Builder extends ApplicationImpl.Builder<ServerImpl, Builder> {
 
         private final int port;
         private final String filePath;
         private int maxFrameSize = MAX_FRAME_SIZE;
+        private int bossThreads;
+        private int reusePortChannels = 1;
 
         public Builder(int port) {
             super(new ServerImpl());
@@ -236,6 +425,30 @@ public final class ServerImpl extends ApplicationImpl implements Server {
             this.maxFrameSize = maxSize;
         }
 
+        /**
+         * @see Server.Builder#lengthPrefixedFrames(boolean)
+         */
+        public void lengthPrefixedFrames(boolean enabled) {
+            validate();
+            application.lengthPrefixedFrames = enabled;
+        }
+
+        /**
+         * @see Server.Builder#bossThreads(int)
+         */
+        public void bossThreads(int threads) {
+            validate();
+            bossThreads = checkPositive(threads, "threads");
+        }
+
+        /**
+         * @see Server.Builder#reusePort(int)
+         */
+        public void reusePort(int channels) {
+            validate();
+            reusePortChannels = checkPositive(channels, "channels");
+        }
+
         /**
          * @see Server.Builder#caching(PacketCaching)
          */
@@ -288,24 +501,49 @@ public final class ServerImpl extends ApplicationImpl implements Server {
             if (application.compressionSetting == null) {
                 application.compressionSetting = new CompressionSetting();
             }
-            application.worker = new Thread(() -> {
-                final boolean uds = filePath != null;
-                final ServerBootstrap bootstrap = application.start(timeout, options, uds, maxFrameSize);
+            if (bossThreads > 0) {
+                application.bossGroup = UDS.eventLoopGroup(bossThreads);
+            }
+            final boolean uds = filePath != null;
+            final ServerBootstrap bootstrap = application.start(timeout, options, uds, maxFrameSize);
+            final int channels = uds || !UDS.isReusePortAvailable() ? 1 : reusePortChannels;
+            if (channels > 1) {
+                // Every server channel is bound to the same port, so the kernel can balance incoming
+                // connections between them.
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
+            final List<Channel> serverChannels = new ArrayList<>(channels);
+            for (int i = 0; i < channels; i++) {
                 final ChannelFuture channelFuture;
                 if (uds) {
                     channelFuture = bootstrap.bind(UDS.domainSocketAddress(filePath));
                 } else {
                     channelFuture = bootstrap.bind(port);
                 }
-                final Channel channel;
-                try {
-                    channel = channelFuture.sync().channel();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                    return;
+                // All channels are bound before the server is returned, so clients can connect right away.
+                if (!channelFuture.awaitUninterruptibly().isSuccess()) {
+                    // A server which is only partially listening mustn't be returned.
+                    for (Channel channel : serverChannels) {
+                        channel.close().awaitUninterruptibly();
+                    }
+                    application.group.shutdownGracefully();
+                    application.group = null;
+                    if (application.bossGroup != null) {
+                        application.bossGroup.shutdownGracefully();
+                        application.bossGroup = null;
+                    }
+                    throw new IllegalStateException("The server couldn't be bound to " +
+                            (uds ? filePath : "port " + port) + '!', channelFuture.cause());
                 }
+                final Channel channel = channelFuture.channel();
                 channel.config().setOptions(options);
-                channel.closeFuture().syncUninterruptibly();
+                serverChannels.add(channel);
+            }
+            application.serverChannels = serverChannels;
+            application.worker = new Thread(() -> {
+                for (Channel channel : serverChannels) {
+                    channel.closeFuture().syncUninterruptibly();
+                }
             });
             application.worker.start();
         }
@@ -0,0 +1,218 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.internal;
+
+import de.terrarier.netlistening.api.compression.CompressionContext;
+import de.terrarier.netlistening.api.event.InvalidDataEvent;
+import de.terrarier.netlistening.api.type.DataType;
+import de.terrarier.netlistening.impl.ApplicationImpl;
+import de.terrarier.netlistening.impl.ConnectionImpl;
+import de.terrarier.netlistening.network.PacketDataDecoder;
+import de.terrarier.netlistening.util.ConversionUtil;
+import io.netty.buffer.ByteBuf;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static de.terrarier.netlistening.internal.InternalUtil.writeInt;
+import static de.terrarier.netlistening.util.ByteBufUtilExtension.correctSize;
+
+/**
+ * @author Terrarier2111
+ * @since 1.13
+ */
+@ApiStatus.Internal
+public final class DataTypeCompress extends DataType<ByteBuf> {
+
+    // Every sync flush ends with an empty stored block, so it isn't sent and gets appended by the receiver instead.
+    private static final byte[] SYNC_FLUSH_TRAILER = {0x0, 0x0, (byte) 0xFF, (byte) 0xFF};
+    private static final int MIN_OUTPUT_SPACE = 64;
+    // Neither the trailer nor the rest of a packet's input produce any output, so the content of this array
+    // is never read.
+    private static final byte[] EMPTY_OUTPUT = new byte[1];
+
+    public DataTypeCompress() {
+        super((byte) 0xF, (byte) (4 + 4), false);
+    }
+
+    @Override
+    public ByteBuf read0(@AssumeNotNull PacketDataDecoder.DecoderContext context, @AssumeNotNull List<Object> out,
+                         @AssumeNotNull ByteBuf buffer) throws Exception {
+        checkReadable(buffer, 4 + 4);
+        final int size = buffer.readInt();
+        final int compressedSize = buffer.readInt();
+        checkReadable(buffer, compressedSize);
+        final PacketDataDecoder decoder = context.getDecoder();
+        final CompressionContext compressionContext = context.getConnection().getCompressionContext();
+        if (size < 0 || size > decoder.getMaxFrameSize()) {
+            buffer.skipBytes(compressedSize);
+            if (compressionContext.isContextTakeover()) {
+                closeDesynchronized(context, buffer);
+            }
+            if (!decoder.callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.TOO_LARGE_FRAME,
+                    ConversionUtil.intToBytes(size))) {
+                throw new IllegalStateException("Received a compressed packet which is too large. (size: " + size +
+                        " | max: " + decoder.getMaxFrameSize() + ')');
+            }
+            return null;
+        }
+        final Inflater inflater = compressionContext.startInflate();
+        if (buffer.hasArray()) {
+            inflater.setInput(buffer.array(), buffer.arrayOffset() + buffer.readerIndex(), compressedSize);
+        } else {
+            final byte[] input = compressionContext.getInput(compressedSize);
+            buffer.getBytes(buffer.readerIndex(), input, 0, compressedSize);
+            inflater.setInput(input, 0, compressedSize);
+        }
+        buffer.skipBytes(compressedSize);
+        // The data is inflated into a buffer with the announced size, so it can't exceed it.
+        final ByteBuf dataBuffer = context.getApplication().getAllocator().heapBuffer(size, size);
+        try {
+            int inflated;
+            try {
+                inflated = inflate(inflater, dataBuffer.array(), dataBuffer.arrayOffset(), size);
+            } catch (DataFormatException e) {
+                inflated = -1;
+            }
+            if (inflated != size) {
+                if (compressionContext.isContextTakeover()) {
+                    closeDesynchronized(context, buffer);
+                }
+                if (!decoder.callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.INVALID_COMPRESSED_DATA,
+                        ConversionUtil.intToBytes(size))) {
+                    throw new IllegalStateException("Received compressed data which couldn't be decompressed! " +
+                            "(expected: " + size + " | decompressed: " + inflated + ')');
+                }
+                return null;
+            }
+            dataBuffer.writerIndex(size);
+            decoder.decodeNested(dataBuffer, out);
+        } finally {
+            dataBuffer.release();
+        }
+        return null;
+    }
+
+    /**
+     * Inflates the input of the inflater including the sync flush trailer which isn't sent.
+     *
+     * @return the number of inflated bytes and -1 if the input contains more data than announced.
+     */
+    private static int inflate(@AssumeNotNull Inflater inflater, @AssumeNotNull byte[] data, int offset, int size)
+            throws DataFormatException {
+        int inflated = 0;
+        while (inflated < size) {
+            final int read = inflater.inflate(data, offset + inflated, size - inflated);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary() || inflater.finished())) {
+                return inflated;
+            }
+            inflated += read;
+        }
+        // All the input of the packet has to be consumed before the trailer is appended, as setting the
+        // input discards the input which wasn't consumed yet.
+        int remaining;
+        while ((remaining = inflater.getRemaining()) != 0) {
+            if (inflater.inflate(EMPTY_OUTPUT) != 0 || inflater.getRemaining() == remaining) {
+                return -1;
+            }
+        }
+        inflater.setInput(SYNC_FLUSH_TRAILER);
+        if (inflater.inflate(EMPTY_OUTPUT) != 0 || inflater.getRemaining() != 0) {
+            return -1;
+        }
+        return inflated;
+    }
+
+    /**
+     * Closes a connection whose packets are inflated using a shared context after some of its
+     * compressed data couldn't be inflated, as all following packets would be inflated incorrectly.
+     */
+    private static void closeDesynchronized(@AssumeNotNull PacketDataDecoder.DecoderContext context,
+                                            @AssumeNotNull ByteBuf buffer) {
+        buffer.skipBytes(buffer.readableBytes());
+        context.getHandlerContext().close();
+    }
+
+    @Override
+    public void write0(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
+                       @AssumeNotNull ByteBuf buffer, @AssumeNotNull ByteBuf dataSrc) {
+        final CompressionContext compressionContext = connection.getCompressionContext();
+        final int size = dataSrc.readableBytes();
+        final Deflater deflater = compressionContext.startDeflate();
+        if (dataSrc.hasArray()) {
+            deflater.setInput(dataSrc.array(), dataSrc.arrayOffset() + dataSrc.readerIndex(), size);
+        } else {
+            final byte[] input = compressionContext.getInput(size);
+            dataSrc.getBytes(dataSrc.readerIndex(), input, 0, size);
+            deflater.setInput(input, 0, size);
+        }
+        final int start = buffer.writerIndex();
+        writeInt(application, buffer, 0x2);
+        correctSize(buffer, 4 + 4 + MIN_OUTPUT_SPACE, application.getBuffer());
+        final int sizeIndex = buffer.writerIndex();
+        buffer.writerIndex(sizeIndex + 4 + 4);
+        deflate(deflater, buffer, compressionContext);
+        // The empty stored block which ends the sync flush isn't sent as every compressed packet ends with it.
+        final int compressedSize = buffer.writerIndex() - (sizeIndex + 4 + 4) - SYNC_FLUSH_TRAILER.length;
+        if (compressedSize + 4 + 4 >= size && !compressionContext.isContextTakeover()) {
+            // The data can't be compressed, so it gets sent uncompressed. This isn't possible if the context
+            // is kept, as the receiver has to inflate everything the deflater processed.
+            buffer.writerIndex(start);
+            buffer.writeBytes(dataSrc);
+        } else {
+            buffer.writerIndex(buffer.writerIndex() - SYNC_FLUSH_TRAILER.length);
+            buffer.setInt(sizeIndex, size);
+            buffer.setInt(sizeIndex + 4, compressedSize);
+        }
+        dataSrc.release();
+    }
+
+    private static void deflate(@AssumeNotNull Deflater deflater, @AssumeNotNull ByteBuf buffer,
+                                @AssumeNotNull CompressionContext compressionContext) {
+        int written;
+        if (buffer.hasArray()) {
+            int writable;
+            do {
+                buffer.ensureWritable(MIN_OUTPUT_SPACE);
+                writable = buffer.writableBytes();
+                written = deflater.deflate(buffer.array(), buffer.arrayOffset() + buffer.writerIndex(), writable,
+                        Deflater.SYNC_FLUSH);
+                buffer.writerIndex(buffer.writerIndex() + written);
+            } while (written == writable);
+            return;
+        }
+        final byte[] output = compressionContext.getOutput();
+        do {
+            written = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+            buffer.writeBytes(output, 0, written);
+        } while (written == output.length);
+    }
+
+    @Override
+    protected ByteBuf read(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
+                           @AssumeNotNull ByteBuf buffer) {
+        return null;
+    }
+
+    @Override
+    protected void write(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer,
+                         @AssumeNotNull ByteBuf data) {
+    }
+
+}
@@ -15,44 +15,71 @@ limitations under the License.
  */
 package de.terrarier.netlistening.internal;
 
+import de.terrarier.netlistening.api.encryption.SymmetricEncryptionContext;
+import de.terrarier.netlistening.api.event.InvalidDataEvent;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.network.PacketDataDecoder;
-import de.terrarier.netlistening.util.ByteBufUtilExtension;
+import de.terrarier.netlistening.util.ConversionUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.security.GeneralSecurityException;
 import java.util.List;
 
 import static de.terrarier.netlistening.internal.InternalUtil.writeInt;
 import static de.terrarier.netlistening.util.ByteBufUtilExtension.correctSize;
-import static de.terrarier.netlistening.util.ByteBufUtilExtension.getBytes;
 
 /**
  * @author Terrarier2111
  * @since 1.0
  */
 @ApiStatus.Internal
-public final class DataTypeEncrypt extends DataType<Void> {
+public final class DataTypeEncrypt extends DataType<ByteBuf> {
 
     public DataTypeEncrypt() {
         super((byte) 0xD, (byte) 4, false);
     }
 
     @Override
-    public Void read0(@AssumeNotNull PacketDataDecoder.DecoderContext decoderContext, @AssumeNotNull List<Object> out,
-                      @AssumeNotNull ByteBuf buffer) throws Exception {
+    public ByteBuf read0(@AssumeNotNull PacketDataDecoder.DecoderContext decoderContext,
+                         @AssumeNotNull List<Object> out, @AssumeNotNull ByteBuf buffer) throws Exception {
         checkReadable(buffer, 4);
         final int size = buffer.readInt();
         checkReadable(buffer, size);
-        final byte[] decrypted = decoderContext.getConnection().getEncryptionContext().decrypt(
-                ByteBufUtilExtension.readBytes(buffer, size));
-        final PacketDataDecoder decoder = decoderContext.getDecoder();
-        final ByteBuf dataBuffer = Unpooled.wrappedBuffer(decrypted);
+        final SymmetricEncryptionContext encryptionContext = decoderContext.getConnection().getEncryptionContext();
+        final int maxDecryptedSize;
         try {
-            decoder.decode(decoderContext.getHandlerContext(), dataBuffer, out);
+            maxDecryptedSize = encryptionContext.getDecryptedSize(size);
+        } catch (GeneralSecurityException e) {
+            buffer.skipBytes(size);
+            decoderContext.getApplication().getEventManager().handleExceptionThrown(e);
+            return null;
+        }
+        // The data gets decrypted directly from the received buffer into a pooled one, so it is only copied once.
+        final ByteBuf dataBuffer = decoderContext.getApplication().getAllocator().buffer(maxDecryptedSize);
+        try {
+            final int decrypted;
+            try {
+                // The received data may be split up into several components, which are decrypted one by one
+                // instead of being merged into a single buffer.
+                decrypted = encryptionContext.decrypt(buffer.nioBuffers(buffer.readerIndex(), size),
+                        dataBuffer.nioBuffer(0, maxDecryptedSize));
+            } catch (GeneralSecurityException e) {
+                decoderContext.getApplication().getEventManager().handleExceptionThrown(e);
+                return null;
+            } finally {
+                buffer.skipBytes(size);
+            }
+            if (decrypted < 0) {
+                // Forged, corrupted or replayed data is dropped without affecting the connection.
+                decoderContext.getDecoder().callInvalidDataEvent(
+                        InvalidDataEvent.DataInvalidReason.INVALID_ENCRYPTED_DATA, ConversionUtil.intToBytes(size));
+                return null;
+            }
+            dataBuffer.writerIndex(decrypted);
+            decoderContext.getDecoder().decodeNested(dataBuffer, out);
         } finally {
             dataBuffer.release();
         }
@@ -61,26 +88,41 @@ public final class DataTypeEncrypt extends DataType<Void> {
 
     @Override
     public void write0(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
-                       @AssumeNotNull ByteBuf buffer, Void data) {
-        final byte[] encryptedData = connection.getEncryptionContext().encrypt(
-                getBytes(buffer, buffer.readableBytes()));
-        // We reset the reader index because we want to reuse the old buffer space which is still filled with the unencrypted data
-        buffer.resetWriterIndex();
-        writeInt(application, buffer, 0x3);
-        final int size = encryptedData.length;
-        correctSize(buffer, 4 + size, application.getBuffer());
+                       @AssumeNotNull ByteBuf buffer, @AssumeNotNull ByteBuf dataSrc) throws CancelSignal {
+        final SymmetricEncryptionContext encryptionContext = connection.getEncryptionContext();
+        final int readable = dataSrc.readableBytes();
+        final int start = buffer.writerIndex();
+        final int size;
+        final int dataIndex;
+        try {
+            final int maxSize = encryptionContext.getEncryptedSize(readable);
+            writeInt(application, buffer, 0x3);
+            correctSize(buffer, 4 + maxSize, application.getBuffer());
+            dataIndex = buffer.writerIndex() + 4;
+            // The data gets encrypted directly from the source buffer into the destination buffer without
+            // any intermediate copies.
+            size = encryptionContext.encrypt(dataSrc.nioBuffer(dataSrc.readerIndex(), readable),
+                    buffer.nioBuffer(dataIndex, maxSize));
+        } catch (GeneralSecurityException e) {
+            buffer.writerIndex(start);
+            application.getEventManager().handleExceptionThrown(e);
+            throw CancelSignal.INSTANCE;
+        } finally {
+            dataSrc.release();
+        }
         buffer.writeInt(size);
-        buffer.writeBytes(encryptedData);
+        buffer.writerIndex(dataIndex + size);
     }
 
     @Override
-    protected Void read(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
-                        @AssumeNotNull ByteBuf buffer) {
+    protected ByteBuf read(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
+                           @AssumeNotNull ByteBuf buffer) {
         return null;
     }
 
     @Override
-    protected void write(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer, Void empty) {
+    protected void write(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ByteBuf buffer,
+                         @AssumeNotNull ByteBuf data) {
     }
 
 }
@@ -15,25 +15,25 @@ limitations under the License.
  */
 package de.terrarier.netlistening.internal;
 
-import de.terrarier.netlistening.api.encryption.hash.HashUtil;
+import de.terrarier.netlistening.api.event.EventManager;
 import de.terrarier.netlistening.api.event.LengthExtensionDetectionEvent;
+import de.terrarier.netlistening.api.event.ListenerType;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.network.PacketDataDecoder;
 import de.terrarier.netlistening.util.ByteBufUtilExtension;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus;
 
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 import java.util.List;
 
 import static de.terrarier.netlistening.internal.InternalUtil.writeInt;
 import static de.terrarier.netlistening.util.ByteBufUtilExtension.correctSize;
-import static de.terrarier.netlistening.util.ByteBufUtilExtension.getBytesAndRelease;
 
 /**
  * @author Terrarier2111
@@ -53,46 +53,73 @@ public final class DataTypeHmac extends DataType<ByteBuf> {
         final int size = buffer.readInt();
         final short hashSize = buffer.readShort();
         checkReadable(buffer, size + hashSize);
-        final byte[] traffic = ByteBufUtilExtension.readBytes(buffer, size);
-        final byte[] hash = ByteBufUtilExtension.readBytes(buffer, hashSize);
-        final byte[] computedHash = HashUtil.calculateHMAC(traffic, context.getConnection().getHmacKey(),
+        final ByteBuf traffic = buffer.readSlice(size);
+        final int hashIndex = buffer.readerIndex();
+        buffer.skipBytes(hashSize);
+        // The hash is calculated directly over the received traffic, so it doesn't have to be copied.
+        final Mac mac = context.getConnection().getHmac(
                 context.getApplication().getEncryptionSetting().getHmacSetting().getHashingAlgorithm());
-        if (!Arrays.equals(hash, computedHash)) {
+        update(mac, traffic);
+        final byte[] computedHash = mac.doFinal();
+        if (!hashEquals(buffer, hashIndex, hashSize, computedHash)) {
+            final EventManager eventManager = context.getApplication().getEventManager();
+            if (!eventManager.hasListeners(ListenerType.LENGTH_EXTENSION_DETECTION)) {
+                return null;
+            }
+            final byte[] hash = ByteBufUtilExtension.getBytes(buffer.slice(hashIndex, hashSize), hashSize);
             final LengthExtensionDetectionEvent event = new LengthExtensionDetectionEvent(hash, computedHash);
+            eventManager.callEvent(ListenerType.LENGTH_EXTENSION_DETECTION, event);
             if (event.getResult() == LengthExtensionDetectionEvent.Result.DROP_DATA) {
                 return null;
             }
         }
-        final PacketDataDecoder decoder = context.getDecoder();
-        final ByteBuf dataBuffer = Unpooled.wrappedBuffer(traffic);
-        try {
-            decoder.decode(context.getHandlerContext(), dataBuffer, out);
-        } finally {
-            dataBuffer.release();
-        }
+        context.getDecoder().decodeNested(traffic, out);
         return null;
     }
 
     @Override
     public void write0(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
                        @AssumeNotNull ByteBuf buffer, @AssumeNotNull ByteBuf dataSrc) {
-        final byte[] data = getBytesAndRelease(dataSrc);
         final byte[] hash;
         try {
-            hash = HashUtil.calculateHMAC(data, connection.getHmacKey(),
+            final Mac mac = connection.getHmac(
                     application.getEncryptionSetting().getHmacSetting().getHashingAlgorithm());
+            update(mac, dataSrc);
+            hash = mac.doFinal();
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            dataSrc.release();
             application.getEventManager().handleExceptionThrown(e);
             return;
         }
-        final int dataLength = data.length;
+        final int dataLength = dataSrc.readableBytes();
         final short hashLength = (short) hash.length;
         writeInt(application, buffer, 0x4);
         correctSize(buffer, 4 + 2 + dataLength + hashLength, application.getBuffer());
         buffer.writeInt(dataLength);
         buffer.writeShort(hashLength);
-        buffer.writeBytes(data);
+        buffer.writeBytes(dataSrc);
         buffer.writeBytes(hash);
+        dataSrc.release();
+    }
+
+    private static void update(@AssumeNotNull Mac mac, @AssumeNotNull ByteBuf buffer) {
+        // The components of composite buffers are hashed one by one instead of being merged into a single buffer.
+        for (ByteBuffer component : buffer.nioBuffers()) {
+            mac.update(component);
+        }
+    }
+
+    // Compares the hashes in constant time in order to not leak how many bytes of a forged hash were correct.
+    private static boolean hashEquals(@AssumeNotNull ByteBuf buffer, int index, int length,
+                                      @AssumeNotNull byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        int difference = 0;
+        for (int i = 0; i < length; i++) {
+            difference |= buffer.getByte(index + i) ^ expected[i];
+        }
+        return difference == 0;
     }
 
     @Override
@@ -26,7 +26,6 @@ import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.util.ByteBufUtilExtension;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import org.jetbrains.annotations.ApiStatus;
 
@@ -107,6 +106,9 @@ public final class InternalPayloadEncryptionInit extends InternalPayload {
 
                 encryptionSetting.hmac(hmacSetting);
                 connection.setHmacKey(hmacKey);
+            } else {
+                // The server doesn't sign its traffic, so the client may not expect or send signed data either.
+                encryptionSetting.disableHmac();
             }
             connection.setSymmetricKey(symmetricOptions,
                     AsymmetricEncryptionUtil.decrypt(key, encryptionSetting.getEncryptionData()));
@@ -120,13 +122,13 @@ public final class InternalPayloadEncryptionInit extends InternalPayload {
                 e.printStackTrace();
                 return;
             }
-            final ByteBuf initBuffer = Unpooled.buffer();
+            final Channel channel = connection.getChannel();
+            final ByteBuf initBuffer = channel.alloc().buffer();
 
             DataType.getDTIP().write(application, initBuffer,
                     new InternalPayloadEncryptionInit(
                             connection.getEncryptionContext().getEncryptionData(), publicKey,
                             connection.getHmacKey()));
-            final Channel channel = connection.getChannel();
             channel.writeAndFlush(initBuffer, channel.voidPromise());
             connection.prepare();
         }
@@ -26,7 +26,6 @@ import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ClientImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.nio.charset.Charset;
@@ -59,6 +58,16 @@ public final class InternalPayloadHandshake extends InternalPayload {
             mask |= 1 << 2;
         if (encryption)
             mask |= 1 << 3;
+        if (application.isLengthPrefixedFrames())
+            mask |= 1 << 4;
+        if (compressionSetting.isPayloadCompression())
+            mask |= 1 << 5;
+        final byte[] dictionary = compressionSetting.isPayloadCompression() ?
+                compressionSetting.getPayloadCompressionDictionary() : null;
+        if (dictionary != null)
+            mask |= 1 << 6;
+        if (compressionSetting.isPayloadCompression() && compressionSetting.isPayloadCompressionContextTakeover())
+            mask |= 1 << 7;
         checkWriteable(application, buffer, 1);
         buffer.writeByte(mask);
         if (!utf8) {
@@ -81,6 +90,16 @@ public final class InternalPayloadHandshake extends InternalPayload {
             buffer.writeInt(serverKeyLength);
             buffer.writeBytes(serverKey);
         }
+        if (compressionSetting.isPayloadCompression()) {
+            checkWriteable(application, buffer, 4);
+            buffer.writeInt(compressionSetting.getPayloadCompressionThreshold());
+        }
+        if (dictionary != null) {
+            final int length = dictionary.length;
+            checkWriteable(application, buffer, 4 + length);
+            buffer.writeInt(length);
+            buffer.writeBytes(dictionary);
+        }
     }
 
     @Override
@@ -131,10 +150,22 @@ public final class InternalPayloadHandshake extends InternalPayload {
         final CompressionSetting compressionSetting = new CompressionSetting()
                 .varIntCompression((mask & 1) != 0)
                 .nibbleCompression((mask & 1 << 1) != 0);
-        client.receiveHandshake(compressionSetting, charset, encryptionSetting, serverKey);
+        if ((mask & 1 << 5) != 0) {
+            checkReadable(buffer, 4);
+            compressionSetting.payloadCompression(true)
+                    .payloadCompressionThreshold(buffer.readInt())
+                    .payloadCompressionContextTakeover((mask & 1 << 7) != 0);
+        }
+        if ((mask & 1 << 6) != 0) {
+            checkReadable(buffer, 4);
+            final int length = buffer.readInt();
+            checkReadable(buffer, length);
+            compressionSetting.payloadCompressionDictionary(readBytes(buffer, length));
+        }
+        client.receiveHandshake(compressionSetting, charset, encryptionSetting, serverKey, (mask & 1 << 4) != 0);
 
         if (encryptionSetting != null) {
-            final ByteBuf initBuffer = Unpooled.buffer();
+            final ByteBuf initBuffer = connection.getChannel().alloc().buffer();
             DataType.getDTIP().write(application, initBuffer, ENCRYPTION_INIT);
             client.sendRawData(initBuffer);
         }
@@ -27,7 +27,6 @@ import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.network.PacketCache;
 import de.terrarier.netlistening.network.PacketSkeleton;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.ApiStatus;
 
 /**
@@ -146,20 +145,12 @@ public final class InternalPayloadRegisterPacket extends InternalPayload {
                 cache.broadcastRegister(application, new InternalPayloadRegisterPacket(packetId, types), connection,
                         null);
             }
-        } else {
+        } else if (application.getCaching() == PacketCaching.GLOBAL) {
             // TODO: Check if we have to "fix" this (we probably have to).
-            final InternalPayloadRegisterPacket register = new InternalPayloadRegisterPacket(packet.getId(), types);
-            if (application.getCaching() == PacketCaching.GLOBAL) {
-                cache.broadcastRegister(application, register, null, null);
-            } else {
-                final ByteBuf registerBuffer = Unpooled.buffer(
-                        InternalUtil.singleOctetIntSize(application) + 1 + getSize(application));
-                DataType.getDTIP().write(application, registerBuffer, register);
-            }
-        }
-        synchronized (packet) {
-            packet.register();
+            cache.broadcastRegister(application, new InternalPayloadRegisterPacket(packet.getId(), types), null,
+                    null);
         }
+        packet.register();
     }
 
     public int getSize(@AssumeNotNull ApplicationImpl application) {
@@ -20,7 +20,6 @@ import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ApplicationImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import org.jetbrains.annotations.ApiStatus;
 
@@ -63,11 +62,11 @@ public final class InternalPayloadUpdateTranslationEntry extends InternalPayload
         } else {
             final int newId = readInt(application, buffer);
             application.getCache().swapId(id, newId);
-            final ByteBuf translationUpdateBuffer = Unpooled.buffer(singleOctetIntSize(application) + 1 +
+            final Channel channel = connection.getChannel();
+            final ByteBuf translationUpdateBuffer = channel.alloc().buffer(singleOctetIntSize(application) + 1 +
                     getSize(application, id));
             DataType.getDTIP().write(application, translationUpdateBuffer,
                     new InternalPayloadUpdateTranslationEntry(id));
-            final Channel channel = connection.getChannel();
             channel.writeAndFlush(translationUpdateBuffer, channel.voidPromise());
         }
     }
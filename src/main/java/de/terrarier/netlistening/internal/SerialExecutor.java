@@ -0,0 +1,84 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.internal;
+
+import io.netty.util.internal.PlatformDependent;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Executes the submitted tasks one after another in submission order
+ * on the threads of an underlying executor.
+ *
+ * @author Terrarier2111
+ * @since 1.13
+ */
+@ApiStatus.Internal
+public final class SerialExecutor implements Executor {
+
+    private static final AtomicIntegerFieldUpdater<SerialExecutor> SCHEDULED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SerialExecutor.class, "scheduled");
+    // The number of tasks which are executed before the thread is handed back to the underlying executor.
+    private static final int MAX_TASKS_PER_RUN = 64;
+    private final Executor executor;
+    private final Queue<Runnable> tasks = PlatformDependent.newMpscQueue();
+    private final Runnable runner = this::run;
+    private volatile int scheduled;
+
+    public SerialExecutor(@AssumeNotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @see Executor#execute(Runnable)
+     */
+    @Override
+    public void execute(@NotNull Runnable task) {
+        tasks.offer(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (SCHEDULED_UPDATER.compareAndSet(this, 0, 1)) {
+            try {
+                executor.execute(runner);
+            } catch (RuntimeException exception) {
+                scheduled = 0;
+                throw exception;
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            Runnable task;
+            for (int i = 0; i < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null; i++) {
+                task.run();
+            }
+        } finally {
+            scheduled = 0;
+            // Tasks which were submitted while the last ones were executed have to be scheduled again.
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+}
@@ -16,6 +16,7 @@ limitations under the License.
 package de.terrarier.netlistening.network;
 
 import de.terrarier.netlistening.Connection;
+import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.encryption.hash.DefaultHashFingerprint64;
 import de.terrarier.netlistening.api.encryption.hash.FarmHashFingerprint64;
 import de.terrarier.netlistening.api.encryption.hash.HashFingerprint;
@@ -26,14 +27,16 @@ import de.terrarier.netlistening.internal.AssumeNotNull;
 import de.terrarier.netlistening.internal.InternalPayloadRegisterPacket;
 import de.terrarier.netlistening.internal.InternalUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -44,6 +47,7 @@ import java.util.concurrent.locks.ReentrantLock;
 @ApiStatus.Internal
 public final class PacketCache {
 
+    private static final PacketSkeleton COMPRESSION_PACKET_SKELETON = new PacketSkeleton(0x2, DataType.getDTC());
     private static final PacketSkeleton ENCRYPTION_PACKET_SKELETON = new PacketSkeleton(0x3, DataType.getDTE());
     private static final PacketSkeleton HMAC_PACKET_SKELETON = new PacketSkeleton(0x4, DataType.getDTHMAC());
     private static final HashFingerprint FINGERPRINT;
@@ -61,9 +65,11 @@ public final class PacketCache {
     private final Map<Integer, PacketSkeleton> idPacketMapping = new ConcurrentHashMap<>();
     private final Map<Long, PacketSkeleton> dataTypePacketMapping = new ConcurrentHashMap<>();
     private final Lock lock = new ReentrantLock(true);
+    private volatile PacketTypeNode root = new PacketTypeNode();
     private volatile int id = 5;
 
     public PacketCache() {
+        idPacketMapping.put(0x2, COMPRESSION_PACKET_SKELETON);
         idPacketMapping.put(0x3, ENCRYPTION_PACKET_SKELETON);
         idPacketMapping.put(0x4, HMAC_PACKET_SKELETON);
     }
@@ -117,15 +123,65 @@ public final class PacketCache {
         final PacketSkeleton packet = new PacketSkeleton(id, data);
         idPacketMapping.put(id, packet);
         dataTypePacketMapping.put(dataHash, packet);
+        PacketTypeNode node = root;
+        for (DataType<?> type : data) {
+            node = node.getOrCreateChild(type.getId());
+        }
+        if (node.packet == null) {
+            node.packet = packet;
+        }
         return packet;
     }
 
+    /**
+     * Looks up the packet which consists of the data types of the passed
+     * components, this doesn't allocate and doesn't acquire the lock.
+     *
+     * @param data the components of which the types should be looked up.
+     * @return the packet consisting of the types of the passed components,
+     * null if no such packet was registered yet.
+     */
+    public PacketSkeleton getPacket(@AssumeNotNull List<DataComponent<?>> data) {
+        PacketTypeNode node = root;
+        final int size = data.size();
+        for (int i = 0; i < size; i++) {
+            node = node.getChild(data.get(i).getType().getId());
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.packet;
+    }
+
+    /**
+     * Looks up the packet which consists of the data types of the passed
+     * components and registers it if it doesn't exist yet.
+     *
+     * @param notifier the first element is set to true if the packet got registered by this call.
+     * @param data the components of which the types should be looked up.
+     * @return the packet consisting of the types of the passed components.
+     */
+    @AssumeNotNull
+    public PacketSkeleton getOrRegisterPacket(@AssumeNotNull boolean[] notifier,
+                                              @AssumeNotNull List<DataComponent<?>> data) {
+        final PacketSkeleton packet = getPacket(data);
+        if (packet != null) {
+            return packet;
+        }
+        final int size = data.size();
+        final DataType<?>[] types = new DataType<?>[size];
+        for (int i = 0; i < size; i++) {
+            types[i] = data.get(i).getType();
+        }
+        return getOrRegisterPacket(notifier, types);
+    }
+
     private PacketSkeleton getPacket(long dataHash) {
         return dataTypePacketMapping.get(dataHash);
     }
 
     @AssumeNotNull
-    PacketSkeleton getOrRegisterPacket(@AssumeNotNull boolean[] notifier, @AssumeNotNull DataType<?>[] data) {
+    public PacketSkeleton getOrRegisterPacket(@AssumeNotNull boolean[] notifier, @AssumeNotNull DataType<?>[] data) {
         final long dataHash = FINGERPRINT.fingerPrint(toBytes(data));
         lock.lock();
         try {
@@ -152,7 +208,7 @@ public final class PacketCache {
             final ByteBuf registerBuffer;
 
             if (buffer == null) {
-                registerBuffer = Unpooled.buffer(
+                registerBuffer = application.getAllocator().buffer(
                         1 + InternalUtil.singleOctetIntSize(application) + payload.getSize(application));
                 DataType.getDTIP().write(application, registerBuffer, payload);
             } else {
@@ -161,12 +217,13 @@ public final class PacketCache {
 
             for (ConnectionImpl connection : connections) {
                 if (ignored == null || connection.getId() != ignored.getId()) {
-                    registerBuffer.retain();
+                    // Every connection gets its own view of the buffer as writing it consumes its readable bytes.
+                    final ByteBuf duplicate = registerBuffer.retainedDuplicate();
                     if (connection.isConnected()) {
                         final Channel channel = connection.getChannel();
-                        channel.writeAndFlush(registerBuffer, channel.voidPromise());
+                        channel.writeAndFlush(duplicate, channel.voidPromise());
                     } else {
-                        connection.writeToInitialBuffer(registerBuffer);
+                        connection.writeToInitialBuffer(duplicate);
                     }
                 }
             }
@@ -174,6 +231,16 @@ public final class PacketCache {
         }
     }
 
+    public void collectSizeHints(@AssumeNotNull Map<List<DataType<?>>, Integer> sizeHints) {
+        for (PacketSkeleton packet : idPacketMapping.values()) {
+            final int sizeHint = packet.getSizeHint();
+            // Internal packets are skipped as their size hints are never updated.
+            if (sizeHint != 0) {
+                sizeHints.merge(Arrays.asList(packet.getData()), sizeHint, Math::max);
+            }
+        }
+    }
+
     public void swapId(int former, int next) {
         lock.lock();
         try {
@@ -189,6 +256,7 @@ public final class PacketCache {
     public void clear() {
         idPacketMapping.clear();
         dataTypePacketMapping.clear();
+        root = new PacketTypeNode();
     }
 
     @AssumeNotNull
@@ -201,4 +269,31 @@ public final class PacketCache {
         return ret;
     }
 
+    /**
+     * A node of a trie which maps the ids of data types to the packets
+     * consisting of them. Nodes are only modified while holding the lock
+     * but may be read concurrently without locking.
+     */
+    private static final class PacketTypeNode {
+
+        // The ids of the data types which can be sent in packets range from 0x1 to 0xC.
+        private final AtomicReferenceArray<PacketTypeNode> children = new AtomicReferenceArray<>(0xC + 1);
+        private volatile PacketSkeleton packet;
+
+        PacketTypeNode getChild(byte typeId) {
+            return children.get(typeId);
+        }
+
+        @AssumeNotNull
+        PacketTypeNode getOrCreateChild(byte typeId) {
+            PacketTypeNode child = children.get(typeId);
+            if (child == null) {
+                child = new PacketTypeNode();
+                children.set(typeId, child);
+            }
+            return child;
+        }
+
+    }
+
 }
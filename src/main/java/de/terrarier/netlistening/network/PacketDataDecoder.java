@@ -16,7 +16,7 @@ limitations under the License.
 package de.terrarier.netlistening.network;
 
 import de.terrarier.netlistening.Server;
-import de.terrarier.netlistening.api.DataComponent;
+import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.event.*;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ApplicationImpl;
@@ -28,14 +28,13 @@ import de.terrarier.netlistening.internal.InternalUtil;
 import de.terrarier.netlistening.util.ByteBufUtilExtension;
 import de.terrarier.netlistening.util.ConversionUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.util.internal.SystemPropertyUtil;
 import org.jetbrains.annotations.ApiStatus;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static io.netty.util.internal.EmptyArrays.EMPTY_BYTES;
 
@@ -56,16 +55,17 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
     private final ConnectionImpl connection;
     private final int maxFrameSize;
     private final boolean keepAlive;
+    private final boolean lazyDecoding;
     private DecoderContext context;
-    private boolean framing;
-    private ByteBuf holdingBuffer;
-    private List<DataComponent<?>> storedData;
+    private DataContainer storedData;
     private int index;
     private PacketSkeleton packet;
-    private boolean hasId;
     private boolean invalidData;
+    private boolean completeFrame;
+    private boolean lengthPrefixedFrames;
+    private boolean detectLengthPrefixedFrames;
+    private int frameBytesToDiscard;
     private byte lastKeepAliveId = Byte.MIN_VALUE;
-    private boolean readKeepAliveId;
 
     public PacketDataDecoder(@AssumeNotNull ApplicationImpl application, @AssumeNotNull DataHandler handler,
                              @AssumeNotNull ConnectionImpl connection, int maxFrameSize, boolean keepAlive) {
@@ -74,14 +74,24 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
         this.connection = connection;
         this.maxFrameSize = maxFrameSize;
         this.keepAlive = keepAlive || IGNORE_UNSUPPORTED_KEEP_ALIVE_PACKETS;
+        lazyDecoding = application.isLazyDecoding();
+        if (application instanceof Server) {
+            lengthPrefixedFrames = application.isLengthPrefixedFrames();
+        } else {
+            // Clients don't know whether the server prefixes frames with their length until the
+            // first frame was received.
+            detectLengthPrefixedFrames = true;
+        }
+        // Fragments of partially received packets are kept as components of a composite buffer
+        // instead of getting copied into a contiguous buffer every time new data arrives.
+        setCumulator(COMPOSITE_CUMULATOR);
     }
 
     @Override
     public void decode(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull ByteBuf buffer,
                        @AssumeNotNull List<Object> out) throws Exception {
-        final int readable = buffer.readableBytes();
         // This prevents empty packets from being decoded after the connection was closed.
-        if (readable < 1) {
+        if (!buffer.isReadable()) {
             if (IGNORE_EMPTY_PACKETS || !ctx.channel().isActive() ||
                     callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.EMPTY_PACKET, EMPTY_BYTES)) {
                 return;
@@ -89,56 +99,115 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
             throw new IllegalStateException("Received an empty packet!");
         }
 
-        if (framing || readKeepAliveId) {
-            if (readKeepAliveId) {
-                readKeepAliveId = false;
-                readKeepAlive(buffer);
+        if (detectLengthPrefixedFrames) {
+            if (buffer.readableBytes() < 4) {
                 return;
             }
-            // Framing
-            final ByteBuf tmp = holdingBuffer;
-            final int writable = tmp.writableBytes();
-            final boolean waitForData = writable > readable;
-            final byte[] remaining = ByteBufUtilExtension.readBytes(buffer, waitForData ? readable : writable);
-            tmp.writeBytes(remaining);
-            if (waitForData) {
-                return;
-            }
-            framing = false;
-            if (hasId) {
-                hasId = false;
-                if (packet != null) {
-                    read(out, storedData, buffer, packet, index, tmp);
-                } else {
-                    readPayload(tmp);
-                }
-            } else {
-                readPacket(buffer, out, tmp);
+            // The first packet a server sends is the handshake whose id (0x0) is always written as a
+            // 4 byte int, so a non zero value can only be the length prefix of the first frame.
+            lengthPrefixedFrames = buffer.getInt(buffer.readerIndex()) != 0x0;
+            detectLengthPrefixedFrames = false;
+        }
+
+        if (lengthPrefixedFrames) {
+            readFrame(buffer, out);
+            return;
+        }
+
+        final PacketSkeleton packet = this.packet;
+        if (packet != null) {
+            // Resuming the decoding of a packet which wasn't fully received before.
+            final DataContainer data = storedData;
+            this.packet = null;
+            storedData = null;
+            read(out, data, buffer, packet, index);
+            return;
+        }
+
+        readPacket(buffer, out);
+    }
+
+    /**
+     * @return the maximum size of a frame which may be received.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Decodes packets which are contained inside another packet (for example
+     * encrypted packets), such packets have to be received completely
+     * as no further data can be appended to them.
+     *
+     * @param buffer the buffer containing the nested packets.
+     * @param out the list to which decoded messages get added.
+     * @throws Exception if an error occurs while decoding the nested packets.
+     */
+    public void decodeNested(@AssumeNotNull ByteBuf buffer, @AssumeNotNull List<Object> out) throws Exception {
+        final boolean completeFrame = this.completeFrame;
+        this.completeFrame = true;
+        try {
+            while (buffer.isReadable()) {
+                readPacket(buffer, out);
             }
+        } finally {
+            this.completeFrame = completeFrame;
+        }
+    }
 
-            if (!framing || !tmp.equals(holdingBuffer)) {
-                tmp.release();
-                if (!framing) {
-                    holdingBuffer = null;
-                }
+    private void readFrame(@AssumeNotNull ByteBuf buffer, @AssumeNotNull List<Object> out) throws Exception {
+        if (frameBytesToDiscard != 0 && !discardFrame(buffer)) {
+            return;
+        }
+        final int readable = buffer.readableBytes();
+        if (readable < 4) {
+            return;
+        }
+        final int frameSize = buffer.getInt(buffer.readerIndex());
+        if (frameSize < 0) {
+            final byte[] data = ConversionUtil.intToBytes(frameSize);
+            if (!callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.INVALID_LENGTH, data)) {
+                throw new IllegalStateException("Received a frame with an invalid length. (size: " + frameSize + ')');
             }
+            // The start of the next frame can't be determined anymore, so we have to drop all the received data.
+            buffer.skipBytes(readable);
+            return;
+        }
+        if (frameSize > maxFrameSize) {
+            if (!callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.TOO_LARGE_FRAME,
+                    ConversionUtil.intToBytes(frameSize))) {
+                throw new IllegalStateException("Received a frame which is too large. (size: " + frameSize +
+                        " | max: " + maxFrameSize + ')');
+            }
+            // The frame gets dropped while it is received instead of being kept in the cumulation.
+            buffer.skipBytes(4);
+            frameBytesToDiscard = frameSize;
+            discardFrame(buffer);
+            return;
+        }
+        if (readable - 4 < frameSize) {
+            // Only the length prefix of the frame is read, the frame itself is kept in the cumulation
+            // until it was received completely.
             return;
         }
+        buffer.skipBytes(4);
+        decodeNested(buffer.readSlice(frameSize), out);
+    }
 
-        readPacket(buffer, out, buffer);
+    private boolean discardFrame(@AssumeNotNull ByteBuf buffer) {
+        final int discarded = Math.min(frameBytesToDiscard, buffer.readableBytes());
+        buffer.skipBytes(discarded);
+        frameBytesToDiscard -= discarded;
+        return frameBytesToDiscard == 0;
     }
 
-    private void readPacket(@AssumeNotNull ByteBuf buffer, @AssumeNotNull List<Object> out,
-                            @AssumeNotNull ByteBuf idBuffer) throws Exception {
+    private void readPacket(@AssumeNotNull ByteBuf buffer, @AssumeNotNull List<Object> out) throws Exception {
+        final int start = buffer.readerIndex();
         int id;
         try {
-            id = InternalUtil.readInt(application, idBuffer);
-        } catch (CancelReadSignal e) {
-            // Preparing framing of packet id.
-            holdingBuffer = Unpooled.buffer(e.size);
-            transferRemaining(buffer);
-            packet = null;
-            hasId = false;
+            id = InternalUtil.readInt(application, buffer);
+        } catch (CancelReadSignal signal) {
+            awaitData(buffer, start, signal.size);
             return;
         }
         if (application instanceof Server) {
@@ -148,14 +217,14 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
         switch (id) {
             case 0x1:
                 // Handling keep alive packets.
-                if (buffer.isReadable()) {
-                    readKeepAlive(buffer);
-                } else {
-                    readKeepAliveId = true;
+                if (!buffer.isReadable()) {
+                    awaitData(buffer, start, buffer.readerIndex() - start + 1);
+                    return;
                 }
+                readKeepAlive(buffer);
                 break;
             case 0x0:
-                readPayload(buffer);
+                readPayload(buffer, start);
                 break;
             default:
                 final PacketSkeleton packet = connection.getCache().getPacket(id);
@@ -170,65 +239,58 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
                             + Integer.toHexString(id) + ')');
                 }
 
-                read(out, new ArrayList<>(packet.getData().length), buffer, packet, 0, null);
+                read(out, new DataContainer(packet.getData()), buffer, packet, 0);
                 break;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void read(@AssumeNotNull List<Object> out, @AssumeNotNull List<DataComponent<?>> data,
-                      @AssumeNotNull ByteBuf buffer, @AssumeNotNull PacketSkeleton packet, int index,
-                      ByteBuf framingBuffer) throws Exception {
+    private void read(@AssumeNotNull List<Object> out, @AssumeNotNull DataContainer data,
+                      @AssumeNotNull ByteBuf buffer, @AssumeNotNull PacketSkeleton packet, int index)
+            throws Exception {
         final DataType<?>[] dataTypes = packet.getData();
         final int length = dataTypes.length;
+        final int packetStart = buffer.readerIndex();
         boolean ignore = false;
+        boolean lazy = false;
 
         for (int i = index; i < length; i++) {
             final DataType<?> dataType = dataTypes[i];
             if (!dataType.isPublished()) {
                 ignore = true;
             }
-            final boolean useFramingBuffer = framingBuffer != null;
-            final ByteBuf decodeBuffer;
-            if (useFramingBuffer) {
-                decodeBuffer = framingBuffer;
-                framingBuffer = null;
-            } else {
-                decodeBuffer = buffer;
-            }
-            final int start = decodeBuffer.readerIndex();
+            final int start = buffer.readerIndex();
             try {
-                data.add(new DataComponent(dataType, dataType.read0(context, out, decodeBuffer)));
+                if (dataType.isPrimitive()) {
+                    data.setPrimitive(i, dataType.readPrimitive0(buffer));
+                } else if (lazyDecoding) {
+                    // Only the extent of the data is determined, it gets decoded when it is read.
+                    data.setOffset(i, start - packetStart);
+                    dataType.skip0(buffer);
+                    lazy = true;
+                } else {
+                    data.setReference(i, dataType.read0(context, out, buffer));
+                }
             } catch (CancelReadSignal signal) {
-                // prepare framing of data
-                final int frameSize = signal.size + buffer.readerIndex() - start +
-                        (useFramingBuffer ? buffer.readableBytes() : 0);
-                handleFraming(frameSize, start, decodeBuffer);
-                if (useFramingBuffer) {
-                    transferRemaining(buffer);
+                // Lazily decoded packets have to be kept as a whole, so their decoding gets restarted
+                // once the missing data was received.
+                final int awaitStart = lazyDecoding ? packetStart : start;
+                // Wait until the missing data of the component was received.
+                if (awaitData(buffer, awaitStart, signal.size + buffer.readerIndex() - awaitStart)) {
+                    this.packet = packet;
+                    this.index = lazyDecoding ? index : i;
+                    storedData = data;
+                } else {
+                    invalidData = false;
                 }
-                this.packet = packet;
-                this.index = i;
-                storedData = data;
                 return;
             } catch (CancelSignal signal) {
                 // Handling cases in which objects can't get deserialized.
                 if (i + 1 == length) {
+                    invalidData = false;
                     return;
                 }
                 invalidData = true;
-                if (!buffer.isReadable()) {
-                    // prepare framing for data which can be discarded
-                    this.packet = packet;
-                    this.index = i;
-                    storedData = data;
-                    hasId = true;
-                    holdingBuffer = Unpooled.buffer(dataTypes[i + 1].getMinSize());
-                    framing = true;
-                    return;
-                }
             }
-
         }
 
         if (invalidData) {
@@ -236,29 +298,66 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
             return;
         }
         if (!ignore) {
-            // Passing the result to the decode listeners (if present).
-            handler.processData(data, connection);
+            if (lazy) {
+                data.setFrame(buffer.retainedSlice(packetStart, buffer.readerIndex() - packetStart), context);
+            }
+            final Executor listenerExecutor = connection.getListenerExecutor();
+            if (listenerExecutor == null) {
+                // Passing the result to the decode listeners (if present).
+                processData(data, packet);
+                return;
+            }
+            listenerExecutor.execute(() -> {
+                try {
+                    processData(data, packet);
+                } catch (Throwable throwable) {
+                    // Handling the exception the same way as if it was thrown on the event loop.
+                    connection.getChannel().pipeline().fireExceptionCaught(throwable);
+                }
+            });
         }
     }
 
-    private void readPayload(@AssumeNotNull ByteBuf buffer) {
-        final int start = buffer.readerIndex();
-        if (!buffer.isReadable()) {
-            handleFraming(1, start, buffer);
-            packet = null;
-            return;
+    private void processData(@AssumeNotNull DataContainer data, @AssumeNotNull PacketSkeleton packet) {
+        try {
+            handler.processData(data, connection, packet);
+        } finally {
+            // Releasing the frame of lazily decoded data.
+            data.release();
         }
+    }
+
+    private void readPayload(@AssumeNotNull ByteBuf buffer, int start) {
         try {
             DataType.getDTIP().read(application, connection, buffer);
         } catch (CancelReadSignal signal) {
-            // prepare framing of payload
-            final int frameSize = signal.size + buffer.readerIndex() - start;
-            handleFraming(frameSize, start, buffer);
-            packet = null;
+            // The payload gets decoded again (including its id) as soon as it was fully received.
+            awaitData(buffer, start, signal.size + buffer.readerIndex() - start);
         }
     }
 
-    private void handleFraming(int frameSize, int start, @AssumeNotNull ByteBuf decodeBuffer) {
+    /**
+     * Rewinds the buffer to the start of the data which couldn't get read
+     * completely, so that it gets retained in the cumulation until
+     * enough data was received.
+     *
+     * @param buffer the buffer which is being decoded.
+     * @param start the index at which the incomplete data starts.
+     * @param frameSize the number of bytes required to read the incomplete data.
+     * @return whether the decoding of the incomplete data can be resumed
+     * once further data was received.
+     */
+    private boolean awaitData(@AssumeNotNull ByteBuf buffer, int start, int frameSize) {
+        buffer.readerIndex(start);
+        if (completeFrame) {
+            // The data was already received completely, so the missing data will never arrive.
+            final byte[] data = ByteBufUtilExtension.readBytes(buffer, buffer.readableBytes());
+            if (!callInvalidDataEvent(InvalidDataEvent.DataInvalidReason.INCOMPLETE_PACKET, data)) {
+                throw new IllegalStateException("Received an incomplete packet! (missing: " +
+                        (frameSize - data.length) + " bytes)");
+            }
+            return false;
+        }
         if (frameSize > maxFrameSize) {
             final byte[] data = new byte[8];
             // Note: The first 4 bytes represent 0x0 in it's int representation.
@@ -268,17 +367,24 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
                         " | max: " + maxFrameSize + ')');
             }
         }
-        holdingBuffer = Unpooled.buffer(frameSize);
-        decodeBuffer.readerIndex(start);
-        transferRemaining(decodeBuffer);
-        hasId = true;
+        return true;
     }
 
-    private boolean callInvalidDataEvent(@AssumeNotNull InvalidDataEvent.DataInvalidReason reason,
-                                         @AssumeNotNull byte[] data) {
+    /**
+     * Calls an invalid data event if there are any listeners registered for it.
+     *
+     * @param reason the reason why the data is invalid.
+     * @param data the invalid data.
+     * @return whether the invalid data should be ignored.
+     */
+    public boolean callInvalidDataEvent(@AssumeNotNull InvalidDataEvent.DataInvalidReason reason,
+                                        @AssumeNotNull byte[] data) {
+        final EventManager eventManager = application.getEventManager();
+        if (!eventManager.hasListeners(ListenerType.INVALID_DATA)) {
+            return false;
+        }
         final InvalidDataEvent event = new InvalidDataEvent(connection, reason, data);
-        return application.getEventManager().callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE,
-                event);
+        return eventManager.callEvent(ListenerType.INVALID_DATA, EventManager.CancelAction.IGNORE, event);
     }
 
     private void readKeepAlive(@AssumeNotNull ByteBuf buffer) {
@@ -306,18 +412,13 @@ public final class PacketDataDecoder extends ByteToMessageDecoder {
         }
     }
 
-    private void transferRemaining(@AssumeNotNull ByteBuf buffer) {
-        final byte[] remaining = ByteBufUtilExtension.readBytes(buffer, buffer.readableBytes());
-        if (remaining.length != 0) {
-            holdingBuffer.writeBytes(remaining);
-        }
-        framing = true;
-    }
-
     @Override
     public void channelUnregistered(@AssumeNotNull ChannelHandlerContext ctx) throws Exception {
-        final ConnectionDisconnectEvent event = new ConnectionDisconnectEvent(connection);
-        application.getEventManager().callEvent(ListenerType.DISCONNECT, event);
+        final EventManager eventManager = application.getEventManager();
+        if (eventManager.hasListeners(ListenerType.DISCONNECT)) {
+            eventManager.callEvent(ListenerType.DISCONNECT, new ConnectionDisconnectEvent(connection));
+        }
+        connection.releaseCompressionContext();
         super.channelUnregistered(ctx);
     }
 
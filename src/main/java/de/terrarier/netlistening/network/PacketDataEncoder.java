@@ -19,6 +19,9 @@ import de.terrarier.netlistening.Server;
 import de.terrarier.netlistening.api.DataComponent;
 import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.PacketTemplate;
+import de.terrarier.netlistening.api.PreparedPacket;
+import de.terrarier.netlistening.api.compression.CompressionSetting;
 import de.terrarier.netlistening.api.encryption.EncryptionSetting;
 import de.terrarier.netlistening.api.encryption.hash.HmacApplicationPolicy;
 import de.terrarier.netlistening.api.encryption.hash.HmacSetting;
@@ -29,15 +32,11 @@ import de.terrarier.netlistening.internal.AssumeNotNull;
 import de.terrarier.netlistening.internal.CancelSignal;
 import de.terrarier.netlistening.internal.InternalPayloadRegisterPacket;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 
 import static de.terrarier.netlistening.internal.InternalUtil.writeInt;
 
@@ -46,81 +45,119 @@ import static de.terrarier.netlistening.internal.InternalUtil.writeInt;
  * @since 1.0
  */
 @ApiStatus.Internal
-public final class PacketDataEncoder extends MessageToByteEncoder<DataContainer> {
+public final class PacketDataEncoder extends MessageToByteEncoder<Object> {
 
     private final ApplicationImpl application;
     private final ConnectionImpl connection;
-    private final ExecutorService delayedExecutor;
+    // The packet is resolved when the buffer gets allocated and reused during the encoding of the same message.
+    private PacketSkeleton packet;
+    private boolean newPacket;
 
-    public PacketDataEncoder(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
-                             ExecutorService delayedExecutor) {
+    public PacketDataEncoder(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection) {
         this.application = application;
         this.connection = connection;
-        this.delayedExecutor = delayedExecutor;
     }
 
     @Override
-    protected void encode(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull DataContainer data,
-                          @AssumeNotNull ByteBuf buffer) {
-        final List<DataComponent<?>> containedData = data.getData();
-        final int dataSize = containedData.size();
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof DataContainer || msg instanceof PreparedPacket;
+    }
 
-        if (dataSize < 1) {
-            throw new IllegalArgumentException("Tried to send an empty packet!");
+    @AssumeNotNull
+    @Override
+    protected ByteBuf allocateBuffer(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull Object msg,
+                                     boolean preferDirect) {
+        final PacketSkeleton packet = msg instanceof PreparedPacket ?
+                resolvePacket(((PreparedPacket) msg).getTemplate()) : resolvePacket(((DataContainer) msg).getData());
+        this.packet = packet;
+
+        // Pre-sizing the buffer based on the size of previously encoded instances of the packet.
+        final int sizeHint = packet.getSizeHint();
+        if (sizeHint == 0) {
+            return preferDirect ? ctx.alloc().ioBuffer() : ctx.alloc().heapBuffer();
         }
+        return preferDirect ? ctx.alloc().ioBuffer(sizeHint) : ctx.alloc().heapBuffer(sizeHint);
+    }
 
-        final DataType<?>[] types = new DataType[dataSize];
-        boolean serialize = false;
-        for (int i = 0; i < dataSize; i++) {
-            final DataType<?> type = containedData.get(i).getType();
-            types[i] = type;
-            if (type == DataType.OBJECT) {
-                serialize = true;
-            }
+    @AssumeNotNull
+    private PacketSkeleton resolvePacket(@AssumeNotNull List<DataComponent<?>> containedData) {
+        if (containedData.isEmpty()) {
+            throw new IllegalArgumentException("Tried to send an empty packet!");
         }
-        final PacketCache cache = application.getCache();
+
         final boolean[] notifier = new boolean[1];
-        final PacketSkeleton packet = cache.getOrRegisterPacket(notifier, types);
-
-        if (notifier[0]) {
-            synchronized (packet) {
-                final InternalPayloadRegisterPacket register = new InternalPayloadRegisterPacket(packet.getId(), types);
-                final ByteBuf registerBuffer = Unpooled.buffer(4 + 1 + dataSize);
-                DataType.getDTIP().write(application, registerBuffer, register);
-                buffer.writeBytes(registerBuffer);
-                if (application.getCaching() == PacketCaching.GLOBAL) {
-                    cache.broadcastRegister(application, register, connection, registerBuffer);
-                } else {
-                    registerBuffer.release();
-                }
-                packet.register();
+        final PacketSkeleton packet = application.getCache().getOrRegisterPacket(notifier, containedData);
+        newPacket = notifier[0];
+        return packet;
+    }
+
+    @AssumeNotNull
+    private PacketSkeleton resolvePacket(@AssumeNotNull PacketTemplate template) {
+        final PacketCache cache = application.getCache();
+        PacketSkeleton packet = template.getPacket(cache);
+        if (packet == null) {
+            final boolean[] notifier = new boolean[1];
+            packet = cache.getOrRegisterPacket(notifier, template.getTypes());
+            newPacket = notifier[0];
+            template.setPacket(cache, packet);
+        } else {
+            newPacket = false;
+        }
+        return packet;
+    }
+
+    @Override
+    protected void encode(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull Object data,
+                          @AssumeNotNull ByteBuf buffer) {
+        final PacketSkeleton packet = this.packet;
+        this.packet = null;
+        final int start = buffer.writerIndex();
+        encode(ctx, data, buffer, packet);
+        final int size = buffer.writerIndex() - start;
+        if (size != 0) {
+            packet.updateSizeHint(size);
+        }
+    }
+
+    private void encode(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull Object data,
+                        @AssumeNotNull ByteBuf buffer, @AssumeNotNull PacketSkeleton packet) {
+        final boolean serialize = packet.requiresSerialization();
+
+        if (newPacket) {
+            final DataType<?>[] types = packet.getData();
+            final InternalPayloadRegisterPacket register = new InternalPayloadRegisterPacket(packet.getId(), types);
+            final ByteBuf registerBuffer = ctx.alloc().buffer(4 + 1 + types.length);
+            DataType.getDTIP().write(application, registerBuffer, register);
+            buffer.writeBytes(registerBuffer);
+            if (application.getCaching() == PacketCaching.GLOBAL) {
+                application.getCache().broadcastRegister(application, register, connection, registerBuffer);
+            } else {
+                registerBuffer.release();
             }
+            packet.register();
         } else if (application instanceof Server && !packet.isRegistered()) {
-            if (delayedExecutor.isShutdown()) {
-                return;
-            }
-            // Sending data delayed, awaiting the packet's registration to finish.
-            delayedExecutor.execute(() -> {
-                final Channel channel = ctx.channel();
-                final ChannelPromise voidPromise = channel.voidPromise();
-                if (!packet.isRegistered()) {
-                    try {
-                        packet.wait();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-                channel.writeAndFlush(data, voidPromise);
-            });
+            // Sending data delayed, the packet will be sent once its registration finished.
+            packet.delay(ctx.channel(), data);
             return;
         }
         final EncryptionSetting encryptionSetting = application.getEncryptionSetting();
-        final boolean encrypted = data.isEncrypted();
+        final boolean encrypted = data instanceof PreparedPacket ? ((PreparedPacket) data).isEncrypted() :
+                ((DataContainer) data).isEncrypted();
+        final CompressionSetting compressionSetting = application.getCompressionSetting();
+        final boolean compress = compressionSetting.isPayloadCompression();
         final HmacSetting hmacSetting;
 
         if (encryptionSetting == null ||
                 (((hmacSetting = encryptionSetting.getHmacSetting()) == null ||
                         hmacSetting.getApplicationPolicy() == HmacApplicationPolicy.ENCRYPTED) && !encrypted)) {
+            if (compress) {
+                // The data is written to a heap buffer, so the deflater can read it without copying it.
+                final ByteBuf dataBuffer = ctx.alloc().heapBuffer();
+                if (writeToBuffer(dataBuffer, data, packet.getId(), true)) {
+                    compress(buffer, dataBuffer);
+                }
+                return;
+            }
             final ByteBuf dstBuffer = serialize ? ctx.alloc().buffer() : buffer;
             if (writeToBuffer(dstBuffer, data, packet.getId(), serialize) && serialize) {
                 // This is here in order to prevent packets from being sent which contain unserializable data.
@@ -130,29 +167,87 @@ public final class PacketDataEncoder extends MessageToByteEncoder<DataContainer>
             return;
         }
 
-        final boolean hmac = (encrypted || hmacSetting.getApplicationPolicy() == HmacApplicationPolicy.ALL) &&
-                hmacSetting != null;
-        final boolean separateBuffer = serialize || hmac || encrypted;
-        final ByteBuf tmpBuffer = separateBuffer ? ctx.alloc().buffer() : buffer;
-        if (!writeToBuffer(tmpBuffer, data, packet.getId(), separateBuffer)) {
+        // Data which is encrypted in an authenticated mode is already protected against tampering.
+        final boolean hmac = hmacSetting != null && (encrypted ?
+                !connection.getEncryptionContext().isAuthenticated() :
+                hmacSetting.getApplicationPolicy() == HmacApplicationPolicy.ALL);
+        // At this point the data is either encrypted or signed, so it always gets written to a separate buffer first.
+        ByteBuf tmpBuffer = compress ? ctx.alloc().heapBuffer() : ctx.alloc().buffer();
+        if (!writeToBuffer(tmpBuffer, data, packet.getId(), true)) {
             // This is here in order to prevent packets from being sent which contain unserializable data.
             return;
         }
 
+        if (compress && tmpBuffer.readableBytes() >= compressionSetting.getPayloadCompressionThreshold()) {
+            // The data gets compressed before it is encrypted or signed, as encrypted data can't be compressed.
+            final ByteBuf dataBuffer = tmpBuffer;
+            tmpBuffer = ctx.alloc().heapBuffer();
+            DataType.getDTC().write0(application, connection, tmpBuffer, dataBuffer);
+        }
+
         if (encrypted) {
-            DataType.getDTE().write0(application, connection, tmpBuffer, null);
+            final ByteBuf plainBuffer = tmpBuffer;
+            // The encrypted data is written directly into the output buffer if it doesn't have to be signed afterwards.
+            tmpBuffer = hmac ? ctx.alloc().buffer() : buffer;
+            try {
+                DataType.getDTE().write0(application, connection, tmpBuffer, plainBuffer);
+            } catch (CancelSignal signal) {
+                if (hmac) {
+                    tmpBuffer.release();
+                }
+                return;
+            }
         }
         if (hmac) {
             DataType.getDTHMAC().write0(application, connection, buffer, tmpBuffer);
-        } else if (serialize) {
-            buffer.writeBytes(tmpBuffer);
-            tmpBuffer.release();
         }
     }
 
-    private boolean writeToBuffer(@AssumeNotNull ByteBuf buffer, @AssumeNotNull DataContainer data, int packetId,
+    private boolean writeToBuffer(@AssumeNotNull ByteBuf buffer, @AssumeNotNull Object data, int packetId,
                                   boolean releaseOnError) {
         writeInt(application, buffer, packetId);
+        if (data instanceof PreparedPacket) {
+            return writeToBuffer(buffer, (PreparedPacket) data, releaseOnError);
+        }
+        return writeToBuffer(application, connection, buffer, (DataContainer) data, releaseOnError);
+    }
+
+    /**
+     * Encodes data once, so that the result can be written to multiple connections which
+     * share the same packet cache and don't encrypt, sign or compress the data individually.
+     *
+     * @param application the application which sends the data.
+     * @param connection one of the connections to which the data gets sent.
+     * @param data the data which should be encoded.
+     * @param packet the registered packet which describes the data.
+     * @return the encoded data and null if the data couldn't get encoded.
+     */
+    public static ByteBuf encodeShared(@AssumeNotNull ApplicationImpl application,
+                                       @AssumeNotNull ConnectionImpl connection, @AssumeNotNull DataContainer data,
+                                       @AssumeNotNull PacketSkeleton packet) {
+        final int sizeHint = packet.getSizeHint();
+        final ByteBuf buffer = sizeHint == 0 ? application.getAllocator().ioBuffer() :
+                application.getAllocator().ioBuffer(sizeHint);
+        writeInt(application, buffer, packet.getId());
+        if (!writeToBuffer(application, connection, buffer, data, true)) {
+            return null;
+        }
+        packet.updateSizeHint(buffer.readableBytes());
+        return buffer;
+    }
+
+    private void compress(@AssumeNotNull ByteBuf dstBuffer, @AssumeNotNull ByteBuf dataBuffer) {
+        if (dataBuffer.readableBytes() < application.getCompressionSetting().getPayloadCompressionThreshold()) {
+            dstBuffer.writeBytes(dataBuffer);
+            dataBuffer.release();
+            return;
+        }
+        DataType.getDTC().write0(application, connection, dstBuffer, dataBuffer);
+    }
+
+    private static boolean writeToBuffer(@AssumeNotNull ApplicationImpl application,
+                                         @AssumeNotNull ConnectionImpl connection, @AssumeNotNull ByteBuf buffer,
+                                         @AssumeNotNull DataContainer data, boolean releaseOnError) {
         final List<DataComponent<?>> dataComponentList = data.getData();
         final int dataSize = dataComponentList.size();
         for (int i = 0; i < dataSize; i++) {
@@ -170,4 +265,28 @@ public final class PacketDataEncoder extends MessageToByteEncoder<DataContainer>
         return true;
     }
 
+    private boolean writeToBuffer(@AssumeNotNull ByteBuf buffer, @AssumeNotNull PreparedPacket data,
+                                  boolean releaseOnError) {
+        final DataType<?>[] types = data.getTemplate().getTypes();
+        final int dataSize = types.length;
+        for (int i = 0; i < dataSize; i++) {
+            final DataType<?> type = types[i];
+            final Object reference = data.getReference(i);
+            if (reference == null) {
+                type.writePrimitive0(application, buffer, data.getPrimitive(i));
+                continue;
+            }
+            try {
+                type.writeUnchecked(application, connection, buffer, reference);
+            } catch (CancelSignal signal) {
+                // Releases data in order to prevent memory leaks in case of an error.
+                if (releaseOnError) {
+                    buffer.release();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
 }
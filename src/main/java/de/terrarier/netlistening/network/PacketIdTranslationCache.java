@@ -22,7 +22,6 @@ import de.terrarier.netlistening.internal.AssumeNotNull;
 import de.terrarier.netlistening.internal.InternalPayloadUpdateTranslationEntry;
 import de.terrarier.netlistening.internal.InternalUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import org.jetbrains.annotations.ApiStatus;
 
@@ -50,9 +49,9 @@ public final class PacketIdTranslationCache {
 
     public void insert(int foreign, int local) {
         translations.put(foreign, local);
-        final ByteBuf buffer = Unpooled.buffer(initSize);
-        DataType.getDTIP().write(application, buffer, new InternalPayloadUpdateTranslationEntry(foreign, local));
         final Channel channel = connection.getChannel();
+        final ByteBuf buffer = channel.alloc().buffer(initSize);
+        DataType.getDTIP().write(application, buffer, new InternalPayloadUpdateTranslationEntry(foreign, local));
         channel.writeAndFlush(buffer, channel.voidPromise());
     }
 
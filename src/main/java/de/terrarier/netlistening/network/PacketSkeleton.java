@@ -15,11 +15,15 @@ limitations under the License.
  */
 package de.terrarier.netlistening.network;
 
+import de.terrarier.netlistening.api.event.DecodeListener;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.internal.AssumeNotNull;
+import io.netty.channel.Channel;
 import org.jetbrains.annotations.ApiStatus;
 
 import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * @author Terrarier2111
@@ -28,15 +32,33 @@ import java.util.Arrays;
 @ApiStatus.Internal
 public final class PacketSkeleton {
 
+    // Larger instances are rare enough that growing their buffer is cheaper than keeping
+    // buffers of this size for every instance.
+    private static final int MAX_SIZE_HINT = 1 << 16;
     private final int id;
     private final DataType<?>[] data;
     private final int hash;
+    private final boolean serialize;
     private volatile boolean registered;
+    // The hint is updated by the encoders of all connections without synchronization. This race is benign:
+    // int writes can't tear, so readers always see a hint which was computed by some encoder, and as it is
+    // only an estimation, lost or late updates merely cause a buffer to be sized slightly off.
+    private int sizeHint;
+    private final Queue<DelayedSend> delayed = new ConcurrentLinkedQueue<>();
+    private volatile CachedListeners listeners;
 
     PacketSkeleton(int id, @AssumeNotNull DataType<?>... data) {
         this.id = id;
         this.data = data;
         hash = Arrays.hashCode(data);
+        boolean serialize = false;
+        for (DataType<?> type : data) {
+            if (type == DataType.OBJECT) {
+                serialize = true;
+                break;
+            }
+        }
+        this.serialize = serialize;
     }
 
     public int getId() {
@@ -48,13 +70,88 @@ public final class PacketSkeleton {
         return data;
     }
 
-    boolean isRegistered() {
+    /**
+     * @return whether the packet contains data which has to be serialized.
+     */
+    boolean requiresSerialization() {
+        return serialize;
+    }
+
+    public boolean isRegistered() {
         return registered;
     }
 
+    /**
+     * @return the estimated size of an encoded instance of this packet,
+     * 0 if no instance of this packet was encoded yet.
+     */
+    public int getSizeHint() {
+        return sizeHint;
+    }
+
+    void updateSizeHint(int size) {
+        size = Math.min(size, MAX_SIZE_HINT);
+        final int sizeHint = this.sizeHint;
+        if (sizeHint == 0) {
+            this.sizeHint = size;
+        } else if (size > sizeHint) {
+            // Growing by half of the difference only, so a single large instance doesn't cause
+            // all following instances to allocate oversized buffers.
+            this.sizeHint = sizeHint + ((size - sizeHint + 1) >> 1);
+        } else {
+            // Decaying slowly in order to prevent single small instances from
+            // causing the next larger instances to require the buffer to grow.
+            this.sizeHint = sizeHint - ((sizeHint - size) >> 3);
+        }
+    }
+
     public void register() {
         registered = true;
-        notifyAll();
+        releaseDelayed();
+    }
+
+    /**
+     * Queues data which has to be sent to the passed channel once this packet
+     * got registered, if it is already registered the data gets released immediately.
+     *
+     * @param channel the channel the data should be sent to.
+     * @param data    the data which should be sent.
+     */
+    void delay(@AssumeNotNull Channel channel, @AssumeNotNull Object data) {
+        delayed.offer(new DelayedSend(channel, data));
+        // The packet may have been registered while the data was queued.
+        if (registered) {
+            releaseDelayed();
+        }
+    }
+
+    private void releaseDelayed() {
+        DelayedSend send;
+        while ((send = delayed.poll()) != null) {
+            final Channel channel = send.channel;
+            final Object data = send.data;
+            channel.eventLoop().execute(() -> channel.writeAndFlush(data, channel.voidPromise()));
+        }
+    }
+
+    /**
+     * @param version the current version of the registered decode listeners.
+     * @return the decode listeners which are interested in this packet and if they
+     * weren't resolved for the passed version yet, null.
+     */
+    public DecodeListener[] getListeners(int version) {
+        final CachedListeners listeners = this.listeners;
+        return listeners != null && listeners.version == version ? listeners.listeners : null;
+    }
+
+    /**
+     * Caches the decode listeners which are interested in this packet.
+     *
+     * @param listeners the decode listeners which are interested in this packet.
+     * @param version   the version of the registered decode listeners the passed listeners were resolved from.
+     */
+    public void setListeners(@AssumeNotNull DecodeListener[] listeners, int version) {
+        this.listeners = new CachedListeners(listeners, version);
     }
 
     /**
@@ -65,4 +162,28 @@ public final class PacketSkeleton {
         return hash;
     }
 
+    private static final class CachedListeners {
+
+        private final DecodeListener[] listeners;
+        private final int version;
+
+        private CachedListeners(@AssumeNotNull DecodeListener[] listeners, int version) {
+            this.listeners = listeners;
+            this.version = version;
+        }
+
+    }
+
+    private static final class DelayedSend {
+
+        private final Channel channel;
+        private final Object data;
+
+        private DelayedSend(@AssumeNotNull Channel channel, @AssumeNotNull Object data) {
+            this.channel = channel;
+            this.data = data;
+        }
+
+    }
+
 }
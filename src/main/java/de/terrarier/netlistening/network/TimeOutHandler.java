@@ -24,96 +24,72 @@ import de.terrarier.netlistening.impl.ConnectionImpl;
 import de.terrarier.netlistening.internal.AssumeNotNull;
 import de.terrarier.netlistening.internal.InternalUtil;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.ChannelPromise;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.timeout.ReadTimeoutException;
 import org.jetbrains.annotations.ApiStatus;
 
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.TimeUnit;
 
 import static java.lang.Byte.MAX_VALUE;
 import static java.lang.Byte.MIN_VALUE;
 
 /**
+ * Detects read timeouts and sends keep-alive packets whenever nothing was written
+ * for half of the timeout, both driven by the channel's event loop.
+ *
  * @author Terrarier2111
  * @since 1.0
  */
 @ApiStatus.Internal
-public final class TimeOutHandler extends ReadTimeoutHandler {
+public final class TimeOutHandler extends IdleStateHandler {
 
     private final ApplicationImpl application;
     private final ConnectionImpl connection;
-    private Timer timer = new Timer(true);
     private byte counter = MIN_VALUE;
-    private ByteBuf buffer;
+    private boolean closed;
 
     public TimeOutHandler(@AssumeNotNull ApplicationImpl application, @AssumeNotNull ConnectionImpl connection,
                           long timeout) {
-        super(timeout, TimeUnit.MILLISECONDS);
+        super(timeout, timeout / 2, 0L, TimeUnit.MILLISECONDS);
         this.application = application;
         this.connection = connection;
-
-        final long delay = timeout / 2;
-        final boolean client = application instanceof Client;
-        final Channel channel = connection.getChannel();
-        final ChannelPromise voidPromise = channel.voidPromise();
-
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                if (client ? !((ClientImpl) application).hasReceivedHandshake() : !connection.isStable()) {
-                    return;
-                }
-
-                if (counter == MAX_VALUE) {
-                    counter = MIN_VALUE;
-                } else if (buffer == null) {
-                    buffer = Unpooled.buffer(InternalUtil.singleOctetIntSize(application) + 1);
-                    InternalUtil.writeIntUnchecked(application, buffer, 0x1);
-                    buffer.markWriterIndex();
-                }
-
-                buffer.resetWriterIndex();
-                buffer.writeByte(++counter);
-                buffer.retain();
-                channel.writeAndFlush(buffer, voidPromise);
-            }
-        }, delay, delay);
     }
 
     @Override
-    protected void readTimedOut(@AssumeNotNull ChannelHandlerContext ctx) throws Exception {
-        if (!callTimeOut()) {
-            cancel();
-            super.readTimedOut(ctx);
+    protected void channelIdle(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull IdleStateEvent evt) {
+        if (evt.state() == IdleState.WRITER_IDLE) {
+            sendKeepAlive();
+        } else if (evt.state() == IdleState.READER_IDLE) {
+            readTimedOut(ctx);
         }
     }
 
-    @Override
-    public void handlerRemoved(@AssumeNotNull ChannelHandlerContext ctx) throws Exception {
-        cancel();
-        super.handlerRemoved(ctx);
-    }
+    private void sendKeepAlive() {
+        if (application instanceof Client ? !((ClientImpl) application).hasReceivedHandshake() :
+                !connection.isStable()) {
+            return;
+        }
 
-    @Override
-    public void close(@AssumeNotNull ChannelHandlerContext ctx, @AssumeNotNull ChannelPromise promise)
-            throws Exception {
-        cancel();
-        super.close(ctx, promise);
+        if (counter == MAX_VALUE) {
+            counter = MIN_VALUE;
+        }
+
+        final Channel channel = connection.getChannel();
+        final ByteBuf buffer = channel.alloc().buffer(InternalUtil.singleOctetIntSize(application) + 1);
+        InternalUtil.writeIntUnchecked(application, buffer, 0x1);
+        buffer.writeByte(++counter);
+        channel.writeAndFlush(buffer, channel.voidPromise());
     }
 
-    private void cancel() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
-            if (buffer != null && buffer.refCnt() > 0) {
-                buffer.release();
-            }
+    private void readTimedOut(@AssumeNotNull ChannelHandlerContext ctx) {
+        if (!closed && !callTimeOut()) {
+            ctx.fireExceptionCaught(ReadTimeoutException.INSTANCE);
+            ctx.close();
+            closed = true;
         }
     }
 
@@ -74,11 +74,10 @@ public final class ByteBufUtilExtension {
     }
 
     public static void correctSize(@AssumeNotNull ByteBuf buf, int bytes, int buffer) {
-        final int capacity = buf.capacity();
-        final int available = capacity - (buf.writerIndex() + bytes);
-
-        if (available < 0) {
-            buf.capacity(capacity - available + buffer);
+        if (buf.writableBytes() < bytes) {
+            // Let the allocator calculate the new capacity in order to grow the buffer geometrically
+            // instead of reallocating it for every few bytes written.
+            buf.ensureWritable(bytes + buffer);
         }
     }
 
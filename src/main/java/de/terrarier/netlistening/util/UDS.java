@@ -162,14 +162,35 @@ public final class UDS {
     @ApiStatus.Internal
     @AssumeNotNull
     public static EventLoopGroup eventLoopGroup() {
+        return eventLoopGroup(0);
+    }
+
+    /**
+     * @param threads the number of threads of the group, 0 means that Netty's default is used.
+     * @return a new event loop group which fits the channels created by this class.
+     */
+    @ApiStatus.Internal
+    @AssumeNotNull
+    public static EventLoopGroup eventLoopGroup(int threads) {
         try {
-            return Epoll.isAvailable() ? new EpollEventLoopGroup() :
-                    OSX && KQUEUE_EVENT_LOOP_GROUP != null ? KQUEUE_EVENT_LOOP_GROUP.newInstance() :
-                            new NioEventLoopGroup();
-        } catch (InstantiationException | IllegalAccessException e) {
+            return Epoll.isAvailable() ? new EpollEventLoopGroup(threads) :
+                    OSX && KQUEUE_EVENT_LOOP_GROUP != null ?
+                            KQUEUE_EVENT_LOOP_GROUP.getConstructor(int.class).newInstance(threads) :
+                            new NioEventLoopGroup(threads);
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException |
+                 InvocationTargetException e) {
             // KQueueEventLoopGroup is unsupported.
         }
-        return new NioEventLoopGroup();
+        return new NioEventLoopGroup(threads);
+    }
+
+    /**
+     * @return whether multiple server channels can be bound to the same port
+     * via {@code SO_REUSEPORT}, which is only supported by the epoll transport.
+     */
+    @ApiStatus.Internal
+    public static boolean isReusePortAvailable() {
+        return Epoll.isAvailable();
     }
 
     /**
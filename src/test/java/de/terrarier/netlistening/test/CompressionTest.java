@@ -0,0 +1,225 @@
+/*
+Copyright 2021 Terrarier2111
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package de.terrarier.netlistening.test;
+
+import de.terrarier.netlistening.Client;
+import de.terrarier.netlistening.Server;
+import de.terrarier.netlistening.api.DataContainer;
+import de.terrarier.netlistening.api.encryption.EncryptionSetting;
+import de.terrarier.netlistening.api.event.ConnectionDisconnectEvent;
+import de.terrarier.netlistening.api.event.ConnectionDisconnectListener;
+import de.terrarier.netlistening.api.event.DecodeEvent;
+import de.terrarier.netlistening.api.event.DecodeListener;
+import de.terrarier.netlistening.api.event.InvalidDataEvent;
+import de.terrarier.netlistening.api.event.InvalidDataListener;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class CompressionTest {
+
+    @Test(timeout = 5000L)
+    public void testPayloadCompression() {
+        final Server server = Server.builder(55858).compression().payloadCompression(true)
+                .payloadCompressionThreshold(64).build().encryption(new EncryptionSetting()).build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55858).build();
+        final StringBuilder largeValue = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            largeValue.append("compressible ");
+        }
+        final String value = largeValue.toString();
+        final AtomicInteger receivedServer = new AtomicInteger();
+        final AtomicInteger receivedClient = new AtomicInteger();
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                final Object data = value.getData().read();
+                if (largeValue.toString().equals(data) || "small".equals(data)) {
+                    receivedServer.incrementAndGet();
+                }
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (largeValue.toString().equals(value.getData().read())) {
+                    receivedClient.incrementAndGet();
+                }
+            }
+        });
+        client.sendData(value);
+        client.sendData("small");
+        final DataContainer encrypted = new DataContainer();
+        encrypted.add(value);
+        encrypted.setEncrypted(true);
+        client.sendData(encrypted);
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.sendData(value);
+        server.sendData(encrypted);
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (receivedServer.get() != 3 || receivedClient.get() != 2) {
+            throw new Error("Compressed data wasn't received correctly! (server: " + receivedServer.get() +
+                    " | client: " + receivedClient.get() + ')');
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testDictionaryCompression() {
+        final byte[] dictionary = "player joined the game player left the game 123e4567-e89b-12d3-a456-"
+                .getBytes(StandardCharsets.UTF_8);
+        final Server server = Server.builder(55859).compression().payloadCompression(true)
+                .payloadCompressionThreshold(0).payloadCompressionDictionary(dictionary).build().build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55859).build();
+        final AtomicInteger received = new AtomicInteger();
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (("player joined the game 123e4567-e89b-12d3-a456-" + received.get())
+                        .equals(value.getData().read())) {
+                    received.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            client.sendData("player joined the game 123e4567-e89b-12d3-a456-" + i);
+        }
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (received.get() != 10) {
+            throw new Error("Data compressed with a dictionary wasn't received correctly! (" + received.get() + ')');
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testContextTakeover() {
+        final Server server = Server.builder(55860).compression().payloadCompression(true)
+                .payloadCompressionThreshold(0).payloadCompressionContextTakeover(true).build().build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55860).build();
+        final AtomicInteger receivedServer = new AtomicInteger();
+        final AtomicInteger receivedClient = new AtomicInteger();
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                // Every second packet is too small to be compressed, so it has to be sent compressed anyway.
+                final int id = receivedServer.get();
+                final String expected = (id & 1) == 0 ? "player joined the game " + id : "x";
+                if (expected.equals(value.getData().read())) {
+                    receivedServer.incrementAndGet();
+                    value.getConnection().sendData(expected);
+                }
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                final int id = receivedClient.get();
+                if (((id & 1) == 0 ? "player joined the game " + id : "x").equals(value.getData().read())) {
+                    receivedClient.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < 20; i++) {
+            client.sendData((i & 1) == 0 ? "player joined the game " + i : "x");
+        }
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (receivedServer.get() != 20 || receivedClient.get() != 20) {
+            throw new Error("Data compressed with a shared context wasn't received correctly! (server: " +
+                    receivedServer.get() + " | client: " + receivedClient.get() + ')');
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testContextTakeoverDesync() {
+        final Server server = Server.builder(55864).maxFrameSize(1024).compression().payloadCompression(true)
+                .payloadCompressionThreshold(0).payloadCompressionContextTakeover(true).build().build();
+        final Client client = Client.builder("localhost", 55864).build();
+        final AtomicInteger tooLarge = new AtomicInteger();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        server.registerListener(new InvalidDataListener() {
+            @Override
+            public void trigger(InvalidDataEvent value) {
+                if (value.getReason() == InvalidDataEvent.DataInvalidReason.TOO_LARGE_FRAME) {
+                    tooLarge.incrementAndGet();
+                    value.setCancelled(true);
+                }
+            }
+        });
+        server.registerListener(new ConnectionDisconnectListener() {
+            @Override
+            public void trigger(ConnectionDisconnectEvent value) {
+                disconnected.countDown();
+            }
+        });
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            builder.append('x');
+        }
+        // The packet is dropped without being inflated, so the shared context can't be used anymore.
+        client.sendData(builder.toString());
+        boolean closed = false;
+        try {
+            closed = disconnected.await(3L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (tooLarge.get() != 1 || !closed) {
+            throw new Error("A connection with a desynchronized compression context wasn't closed! (dropped: " +
+                    tooLarge.get() + ')');
+        }
+    }
+
+}
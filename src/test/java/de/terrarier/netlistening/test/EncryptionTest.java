@@ -4,11 +4,18 @@ import de.terrarier.netlistening.Client;
 import de.terrarier.netlistening.Server;
 import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.PacketCaching;
+import de.terrarier.netlistening.api.encryption.CipherAlgorithmMode;
+import de.terrarier.netlistening.api.encryption.CipherEncryptionAlgorithm;
+import de.terrarier.netlistening.api.encryption.EncryptionOptions;
 import de.terrarier.netlistening.api.encryption.EncryptionSetting;
+import de.terrarier.netlistening.api.encryption.hash.HmacApplicationPolicy;
+import de.terrarier.netlistening.api.encryption.hash.HmacSetting;
 import de.terrarier.netlistening.api.event.DecodeEvent;
 import de.terrarier.netlistening.api.event.DecodeListener;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public final class EncryptionTest {
 
     @Test(timeout = 5000L)
@@ -61,9 +68,150 @@ public final class EncryptionTest {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        client.stop();
+        server.stop();
         if (!receivedServer[0] || !receivedClient[0]) {
             throw new Error("Connection timed out!");
         }
     }
 
+    @Test(timeout = 5000L)
+    public void testEncryptionWithoutHmac() {
+        final Server server = Server.builder(55855).encryption().disableHmac().build().build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55855).build();
+        final StringBuilder largeValue = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            largeValue.append((char) ('a' + i % 26));
+        }
+        final Object[] received = new Object[3];
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[0] = value.getData().read();
+                received[1] = value.getData().readInt();
+                received[2] = value.getData().read();
+            }
+        });
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final DataContainer data = new DataContainer();
+        data.addAll("Test", 8, largeValue.toString());
+        data.setEncrypted(true);
+        client.sendData(data);
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (!"Test".equals(received[0]) || !Integer.valueOf(8).equals(received[1]) ||
+                !largeValue.toString().equals(received[2])) {
+            throw new Error("Encrypted data wasn't received correctly! (received: " + received[0] + ", " +
+                    received[1] + ')');
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testAuthenticatedEncryption() {
+        final EncryptionSetting encryptionSetting = new EncryptionSetting().symmetricEncryptionOptions(
+                new EncryptionOptions().type(CipherEncryptionAlgorithm.AES).mode(CipherAlgorithmMode.GCM));
+        final Server server = Server.builder(55856).encryption(encryptionSetting).build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55856).build();
+        final AtomicInteger receivedServer = new AtomicInteger();
+        final AtomicInteger receivedClient = new AtomicInteger();
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == receivedServer.get()) {
+                    receivedServer.incrementAndGet();
+                }
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == receivedClient.get()) {
+                    receivedClient.incrementAndGet();
+                }
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            final DataContainer data = new DataContainer();
+            data.addAll(i, "Test");
+            data.setEncrypted(true);
+            client.sendData(data);
+        }
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        for (int i = 0; i < 10; i++) {
+            final DataContainer data = new DataContainer();
+            data.addAll(i, "Test");
+            data.setEncrypted(true);
+            server.sendData(data);
+        }
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (receivedServer.get() != 10 || receivedClient.get() != 10) {
+            throw new Error("Authenticated encrypted data wasn't received correctly! (server: " +
+                    receivedServer.get() + " | client: " + receivedClient.get() + ')');
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void testHmac() {
+        final EncryptionSetting encryptionSetting = new EncryptionSetting().hmac(
+                new HmacSetting().applicationPolicy(HmacApplicationPolicy.ALL));
+        final Server server = Server.builder(55857).encryption(encryptionSetting).build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55857).build();
+        final Object[] received = new Object[2];
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[0] = value.getData().read();
+                received[1] = value.getData().readInt();
+            }
+        });
+        final DataContainer data = new DataContainer();
+        data.addAll("Test", 8);
+        client.sendData(data);
+        try {
+            Thread.sleep(1500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        client.stop();
+        server.stop();
+        if (!"Test".equals(received[0]) || !Integer.valueOf(8).equals(received[1])) {
+            throw new Error("Signed data wasn't received correctly! (received: " + received[0] + ", " +
+                    received[1] + ')');
+        }
+    }
+
 }
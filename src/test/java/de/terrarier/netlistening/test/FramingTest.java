@@ -17,13 +17,16 @@ package de.terrarier.netlistening.test;
 
 import de.terrarier.netlistening.Client;
 import de.terrarier.netlistening.Server;
+import de.terrarier.netlistening.api.DataContainer;
 import de.terrarier.netlistening.api.encryption.EncryptionOptions;
-import de.terrarier.netlistening.api.encryption.SymmetricEncryptionData;
+import de.terrarier.netlistening.api.encryption.SymmetricEncryptionContext;
 import de.terrarier.netlistening.api.encryption.SymmetricEncryptionUtil;
 import de.terrarier.netlistening.api.event.ConnectionPostInitEvent;
 import de.terrarier.netlistening.api.event.ConnectionPostInitListener;
 import de.terrarier.netlistening.api.event.DecodeEvent;
 import de.terrarier.netlistening.api.event.DecodeListener;
+import de.terrarier.netlistening.api.event.InvalidDataEvent;
+import de.terrarier.netlistening.api.event.InvalidDataListener;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ClientImpl;
 import de.terrarier.netlistening.impl.ConnectionImpl;
@@ -34,12 +37,15 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import org.junit.Test;
 
-import javax.crypto.SecretKey;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static de.terrarier.netlistening.util.ByteBufUtilExtension.getBytesAndRelease;
 
@@ -51,11 +57,17 @@ public final class FramingTest {
     public void testEncryptionFraming() {
         final ServerImpl server = (ServerImpl) Server.builder(55843).compression().varIntCompression(false).nibbleCompression(false)
                 .build().encryption().disableHmac().build().build();
+        final List<byte[]> received = new ArrayList<>();
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
         server.registerListener(new DecodeListener() {
             @Override
             public void trigger(DecodeEvent value) {
                 final byte[] data = value.getData().read();
                 System.out.println("Received data: " + Arrays.toString(data));
+                synchronized (received) {
+                    received.add(data);
+                }
+                receivedLatch.countDown();
             }
         });
        /* server.registerListener(new ConnectionPostInitListener() { // used to get a key as a nice-lookin' byte array!
@@ -110,18 +122,11 @@ public final class FramingTest {
             fakePacket.writeByte(0x3); // Just a random number
 
             // send the payload
-            final SecretKey secretKey = SymmetricEncryptionUtil.readSecretKey(KEY,
-                    server.getEncryptionSetting().getSymmetricSetting());
-            final Constructor<SymmetricEncryptionData> constructor = SymmetricEncryptionData.class.getDeclaredConstructor(EncryptionOptions.class, SecretKey.class);
-            constructor.setAccessible(true);
-            final SymmetricEncryptionData symmetricEncryptionData = constructor.newInstance(server.getEncryptionSetting().getSymmetricSetting(), secretKey);
-
             ByteBuf data = Unpooled.buffer();
             data.writeInt(0x3);
-            Method method = SymmetricEncryptionUtil.class.getDeclaredMethod("encrypt", byte[].class, SymmetricEncryptionData.class);
-            method.setAccessible(true);
-            byte[] encryptedData = (byte[]) method.invoke(null,
-                    getBytesAndRelease(fakePacket), symmetricEncryptionData); // get all bytes from data except the last one
+            final byte[] encryptedData = encrypt(server.getEncryptionSetting().getSymmetricSetting(),
+                    getBytesAndRelease(fakePacket));
+            // send all bytes of the encrypted data except the last one
             final int size = encryptedData.length;
             ByteBufUtilExtension.correctSize(data, 4 + size, 0);
             data.writeInt(size);
@@ -131,23 +136,47 @@ public final class FramingTest {
             data = Unpooled.buffer();
             data.writeByte(encryptedData[encryptedData.length - 1]);
             channel.writeAndFlush(data);
-            Thread.sleep(200L);
-        } catch (NoSuchFieldException | IllegalAccessException | InterruptedException | NoSuchMethodException | InvocationTargetException | InstantiationException e) {
+            receivedLatch.await(5L, TimeUnit.SECONDS);
+        } catch (NoSuchFieldException | IllegalAccessException | GeneralSecurityException e) {
+            throw new Error(e);
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
         server.stop();
         client.stop();
+        synchronized (received) {
+            if (received.size() != 1 || !Arrays.equals(received.get(0), new byte[]{0xF, 0x3})) {
+                throw new Error("The fragmented encrypted frame wasn't decoded correctly! (received: " +
+                        received.size() + ')');
+            }
+        }
     }
 
     @Test
     public void testEncryptionFraming2() {
         final ServerImpl server = (ServerImpl) Server.builder(55844).compression().varIntCompression(false).nibbleCompression(false)
                 .build().encryption().disableHmac().build().build();
+        final List<byte[]> received = new ArrayList<>();
+        final CountDownLatch receivedLatch = new CountDownLatch(1);
+        final CountDownLatch incomplete = new CountDownLatch(1);
+        server.registerListener(new InvalidDataListener() {
+            @Override
+            public void trigger(InvalidDataEvent value) {
+                if (value.getReason() == InvalidDataEvent.DataInvalidReason.INCOMPLETE_PACKET) {
+                    value.setCancelled(true);
+                    incomplete.countDown();
+                }
+            }
+        });
         server.registerListener(new DecodeListener() {
             @Override
             public void trigger(DecodeEvent value) {
                 final byte[] data = value.getData().read();
                 System.out.println("Received data: " + Arrays.toString(data));
+                synchronized (received) {
+                    received.add(data);
+                }
+                receivedLatch.countDown();
             }
         });
        /* server.registerListener(new ConnectionPostInitListener() { // used to get a key as a nice-lookin' byte array!
@@ -200,18 +229,11 @@ public final class FramingTest {
             fakePacket.writeInt(0x99); // Too large byte array length
 
             // send the payload
-            final SecretKey secretKey = SymmetricEncryptionUtil.readSecretKey(KEY,
-                    server.getEncryptionSetting().getSymmetricSetting());
-            final Constructor<SymmetricEncryptionData> constructor = SymmetricEncryptionData.class.getDeclaredConstructor(EncryptionOptions.class, SecretKey.class);
-            constructor.setAccessible(true);
-            final SymmetricEncryptionData symmetricEncryptionData = constructor.newInstance(server.getEncryptionSetting().getSymmetricSetting(), secretKey);
-
             ByteBuf data = Unpooled.buffer();
             data.writeInt(0x3);
-            Method method = SymmetricEncryptionUtil.class.getDeclaredMethod("encrypt", byte[].class, SymmetricEncryptionData.class);
-            method.setAccessible(true);
-            byte[] encryptedData = (byte[]) method.invoke(null,
-                    getBytesAndRelease(fakePacket), symmetricEncryptionData); // get all bytes from data except the last one
+            final byte[] encryptedData = encrypt(server.getEncryptionSetting().getSymmetricSetting(),
+                    getBytesAndRelease(fakePacket));
+            // send all bytes of the encrypted data except the last one
             final int size = encryptedData.length;
             ByteBufUtilExtension.correctSize(data, 4 + size, 0);
             data.writeInt(size);
@@ -221,12 +243,21 @@ public final class FramingTest {
             data = Unpooled.buffer();
             data.writeByte(encryptedData[encryptedData.length - 1]);
             channel.writeAndFlush(data);
-            Thread.sleep(200L);
-        } catch (NoSuchFieldException | IllegalAccessException | InterruptedException | NoSuchMethodException | InvocationTargetException | InstantiationException e) {
+            incomplete.await(5L, TimeUnit.SECONDS);
+        } catch (NoSuchFieldException | IllegalAccessException | GeneralSecurityException e) {
+            throw new Error(e);
+        } catch (InterruptedException e) {
             e.printStackTrace();
         }
         server.stop();
         client.stop();
+        // The encrypted frame is complete, but the packet inside it announces more data than it contains.
+        synchronized (received) {
+            if (incomplete.getCount() != 0 || !received.isEmpty()) {
+                throw new Error("The incomplete packet inside the fragmented encrypted frame wasn't detected! " +
+                        "(received: " + received.size() + ')');
+            }
+        }
     }
 
     @Test
@@ -276,4 +307,175 @@ public final class FramingTest {
         }
     }
 
+    @Test
+    public void testLengthPrefixedFrames() {
+        final Server server = Server.builder(55845).lengthPrefixedFrames(true).build();
+        final Client client = Client.builder("localhost", 55845).build();
+        final byte[] payload = new byte[1024 * 256];
+        Arrays.fill(payload, (byte) 0x7);
+        final boolean[] receivedServer = {false};
+        final boolean[] receivedClient = {false};
+        final CountDownLatch received = new CountDownLatch(2);
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                receivedServer[0] = Arrays.equals(payload, value.getData().read());
+                value.getConnection().sendData(value.getData());
+                received.countDown();
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                receivedClient[0] = Arrays.equals(payload, value.getData().read());
+                received.countDown();
+            }
+        });
+        final DataContainer data = new DataContainer();
+        data.add(payload);
+        client.sendData(data);
+        try {
+            // Waiting for the echo instead of a fixed period of time.
+            received.await(5L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (!receivedServer[0] || !receivedClient[0]) {
+            throw new Error("Length prefixed frames weren't received correctly!");
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testTooLargeFrame() {
+        final Server server = Server.builder(55861).lengthPrefixedFrames(true).maxFrameSize(1024).build();
+        final Client client = Client.builder("localhost", 55861).build();
+        final AtomicInteger tooLarge = new AtomicInteger();
+        final CountDownLatch received = new CountDownLatch(2);
+        final AtomicInteger receivedSize = new AtomicInteger();
+        server.registerListener(new InvalidDataListener() {
+            @Override
+            public void trigger(InvalidDataEvent value) {
+                if (value.getReason() == InvalidDataEvent.DataInvalidReason.TOO_LARGE_FRAME) {
+                    tooLarge.incrementAndGet();
+                    value.setCancelled(true);
+                }
+            }
+        });
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                receivedSize.addAndGet(value.getData().<byte[]>read().length);
+                received.countDown();
+            }
+        });
+        // The first frame also registers the packet, so it mustn't be dropped.
+        client.sendData(new byte[16]);
+        // The second frame gets dropped, the following one has to be decoded nonetheless.
+        client.sendData(new byte[1024 * 64]);
+        client.sendData(new byte[16]);
+        try {
+            received.await(5L, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (tooLarge.get() != 1 || receivedSize.get() != 32) {
+            throw new Error("Too large frames weren't dropped correctly! (dropped: " + tooLarge.get() +
+                    " | received: " + receivedSize.get() + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testBatch() {
+        final Server server = Server.builder(55848).flushConsolidation(16).build();
+        final Client client = Client.builder("localhost", 55848).flushConsolidation(16).build();
+        final int[] received = {0};
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == received[0]) {
+                    received[0]++;
+                }
+            }
+        });
+        final List<DataContainer> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final DataContainer data = new DataContainer();
+            data.add(i);
+            data.add("batch");
+            batch.add(data);
+        }
+        client.sendBatch(batch);
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (received[0] != 100) {
+            throw new Error("Batched packets weren't received correctly! (" + received[0] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testThreading() {
+        // All server channels are bound once the server is built.
+        final Server server = Server.builder(55852).bossThreads(1).workerThreads(4).reusePort(2).build();
+        final AtomicInteger received = new AtomicInteger();
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if ("threading".equals(value.getData().read())) {
+                    received.incrementAndGet();
+                }
+            }
+        });
+        final Client[] clients = new Client[4];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = Client.builder("localhost", 55852).workerThreads(1).build();
+            clients[i].sendData("threading");
+        }
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        for (Client client : clients) {
+            client.stop();
+        }
+        if (received.get() != clients.length) {
+            throw new Error("Packets weren't received correctly! (" + received.get() + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testBindFailure() {
+        final Server server = Server.builder(55865).build();
+        boolean failed = false;
+        try {
+            // The port is already in use, so building the second server has to fail.
+            Server.builder(55865).build().stop();
+        } catch (IllegalStateException e) {
+            failed = true;
+        }
+        server.stop();
+        if (!failed) {
+            throw new Error("A server which couldn't be bound was built successfully!");
+        }
+    }
+
+    private static byte[] encrypt(EncryptionOptions options, byte[] data) throws GeneralSecurityException {
+        // The server decrypts the data sent by its clients, so it has to be encrypted in the direction of a client.
+        final SymmetricEncryptionContext context = new SymmetricEncryptionContext(options,
+                SymmetricEncryptionUtil.readSecretKey(KEY, options), false);
+        final ByteBuffer encrypted = ByteBuffer.allocate(context.getEncryptedSize(data.length));
+        final int size = context.encrypt(ByteBuffer.wrap(data), encrypted);
+        return Arrays.copyOf(encrypted.array(), size);
+    }
+
 }
@@ -15,11 +15,17 @@ limitations under the License.
  */
 package de.terrarier.netlistening.test;
 
+import de.terrarier.netlistening.Client;
 import de.terrarier.netlistening.Server;
+import de.terrarier.netlistening.api.Type;
 import de.terrarier.netlistening.api.event.DecodeEvent;
 import de.terrarier.netlistening.api.event.DecodeListener;
+import de.terrarier.netlistening.api.event.PacketListener;
 import org.junit.Test;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public final class ListenerTest {
 
     @Test
@@ -34,4 +40,96 @@ public final class ListenerTest {
         server.stop();
     }
 
+    @Test(timeout = 15000L)
+    public void testListenerExecutor() {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final Server server = Server.builder(55853).listenerExecutor(executor).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final int[] received = {0};
+        final boolean[] eventLoop = {false};
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                eventLoop[0] |= value.getConnection().getChannel().eventLoop().inEventLoop();
+                try {
+                    // Slow listeners may not change the order in which the data is passed to them.
+                    Thread.sleep(10L);
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+                if (value.getData().readInt() == received[0]) {
+                    received[0]++;
+                }
+            }
+        });
+        final Client client = Client.builder("localhost", 55853).build();
+        for (int i = 0; i < 50; i++) {
+            client.sendData(i);
+        }
+        try {
+            Thread.sleep(2000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        executor.shutdown();
+        if (received[0] != 50 || eventLoop[0]) {
+            throw new Error("Data wasn't passed to the listener correctly! (" + received[0] + ", " + eventLoop[0] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testPacketListener() {
+        final Server server = Server.builder(55854).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final int[] received = {0, 0, 0};
+        server.registerListener(new DecodeListener() {
+            @PacketListener(dataTypes = {Type.INT, Type.STRING})
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[0]++;
+            }
+        });
+        server.registerListener(new DecodeListener() {
+            @PacketListener(dataTypes = Type.INT)
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[1]++;
+            }
+        });
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[2]++;
+            }
+        });
+        final Client client = Client.builder("localhost", 55854).build();
+        client.sendData(1, "test");
+        client.sendData(2);
+        client.sendData(3, "test");
+        client.sendData("test");
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (received[0] != 2 || received[1] != 1 || received[2] != 4) {
+            throw new Error("Packets weren't routed correctly! (" + received[0] + ", " + received[1] + ", " +
+                    received[2] + ')');
+        }
+    }
+
 }
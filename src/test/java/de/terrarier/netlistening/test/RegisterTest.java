@@ -16,7 +16,15 @@ limitations under the License.
 package de.terrarier.netlistening.test;
 
 import de.terrarier.netlistening.Client;
+import de.terrarier.netlistening.Connection;
 import de.terrarier.netlistening.Server;
+import de.terrarier.netlistening.api.DataContainer;
+import de.terrarier.netlistening.api.PacketTemplate;
+import de.terrarier.netlistening.api.PreparedPacket;
+import de.terrarier.netlistening.api.event.ConnectionPostInitEvent;
+import de.terrarier.netlistening.api.event.ConnectionPostInitListener;
+import de.terrarier.netlistening.api.event.DecodeEvent;
+import de.terrarier.netlistening.api.event.DecodeListener;
 import de.terrarier.netlistening.api.type.DataType;
 import de.terrarier.netlistening.impl.ClientImpl;
 import io.netty.buffer.ByteBuf;
@@ -25,6 +33,7 @@ import io.netty.channel.Channel;
 import org.junit.Test;
 
 import java.lang.reflect.Field;
+import java.util.Set;
 
 public class RegisterTest {
 
@@ -62,4 +71,202 @@ public class RegisterTest {
         client.stop();
     }
 
+    @Test(timeout = 15000L)
+    public void testPreparedPacket() {
+        final Server server = Server.builder(55846).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55846).build();
+        final PacketTemplate template = new PacketTemplate(DataType.INT, DataType.STRING, DataType.DOUBLE,
+                DataType.BOOLEAN);
+        final int[] received = {0};
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                final DataContainer data = value.getData();
+                if (data.readInt() == received[0] && "hey!".equals(data.read()) && data.readDouble() == 0.5D &&
+                        data.readBoolean()) {
+                    received[0]++;
+                }
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            client.sendData(template.newPacket().putInt(i).putString("hey!").putDouble(0.5D).putBoolean(true));
+        }
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (received[0] != 3) {
+            throw new Error("Prepared packets weren't received correctly! (" + received[0] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testPreparedPacketReset() {
+        final Server server = Server.builder(55862).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55862).build();
+        final PacketTemplate template = new PacketTemplate(DataType.INT, DataType.STRING);
+        final PreparedPacket packet = template.newPacket();
+        final int[] received = {0};
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                value.getConnection().sendData(value.getData());
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                final DataContainer data = value.getData();
+                if (data.readInt() == received[0] && "reset".equals(data.read()) && ++received[0] < 3) {
+                    // The packet was already encoded as its echo was received, so it can be filled again.
+                    client.sendData(packet.reset().putInt(received[0]).putString("reset"));
+                }
+            }
+        });
+        client.sendData(packet.putInt(0).putString("reset"));
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (received[0] != 3) {
+            throw new Error("Reset packets weren't received correctly! (" + received[0] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testBroadcast() {
+        final Server server = Server.builder(55849).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client firstClient = Client.builder("localhost", 55849).build();
+        final Client secondClient = Client.builder("localhost", 55849).build();
+        final int[] received = {0, 0};
+        firstClient.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == received[0] && "broadcast".equals(value.getData().read())) {
+                    received[0]++;
+                }
+            }
+        });
+        secondClient.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == received[1] && "broadcast".equals(value.getData().read())) {
+                    received[1]++;
+                }
+            }
+        });
+        try {
+            Thread.sleep(1000L);
+            for (int i = 0; i < 3; i++) {
+                // The first packet registers the packet, the following ones are only encoded once.
+                server.sendData(i, "broadcast");
+                Thread.sleep(100L);
+            }
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        firstClient.stop();
+        secondClient.stop();
+        if (received[0] != 3 || received[1] != 3) {
+            throw new Error("Broadcast packets weren't received correctly! (" + received[0] + ", " + received[1] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testEarlySend() {
+        final Server server = Server.builder(55850).build();
+        server.registerListener(new ConnectionPostInitListener() {
+            @Override
+            public void trigger(ConnectionPostInitEvent value) {
+                // The connection isn't ready yet, so the data has to be queued until the handshake finished.
+                for (int i = 0; i < 3; i++) {
+                    value.getConnection().sendData(i, "early");
+                }
+            }
+        });
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Client client = Client.builder("localhost", 55850).build();
+        final int[] received = {0};
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                if (value.getData().readInt() == received[0] && "early".equals(value.getData().read())) {
+                    received[0]++;
+                }
+            }
+        });
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (received[0] != 3) {
+            throw new Error("Early packets weren't received correctly! (" + received[0] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testConnectionLookup() {
+        final Server server = Server.builder(55851).build();
+        try {
+            // Waiting for the server to be bound.
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        final Set<Connection> connections = server.getConnections();
+        final Client client = Client.builder("localhost", 55851).build();
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        // The returned set is a view, so it contains connections which were established afterwards.
+        if (connections.size() != 1) {
+            throw new Error("The connection view wasn't updated! (" + connections.size() + ')');
+        }
+        final Connection connection = connections.iterator().next();
+        final boolean found = server.getConnection(connection.getId()) == connection && connections.contains(connection);
+        connection.disconnect();
+        final boolean removed = server.getConnection(connection.getId()) == null && connections.isEmpty();
+        server.stop();
+        client.stop();
+        if (!found || !removed) {
+            throw new Error("The connection couldn't be looked up correctly! (" + found + ", " + removed + ')');
+        }
+    }
+
 }
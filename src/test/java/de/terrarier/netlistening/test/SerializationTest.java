@@ -24,6 +24,9 @@ import io.netty.buffer.ByteBuf;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class SerializationTest {
 
@@ -108,4 +111,99 @@ public final class SerializationTest {
         server.stop();
     }
 
+    @Test(timeout = 15000L)
+    public void testLazyDeserialization() {
+        final AtomicInteger deserialized = new AtomicInteger();
+        final RegisterSerializationProvider serverSerializationProvider = new RegisterSerializationProvider();
+        serverSerializationProvider.registerTransformer(new RegisterSerializationProvider.ByteBufTransformer<Object>() {
+            @Override
+            protected Object fromBytes(ByteBuf data, int length) {
+                deserialized.incrementAndGet();
+                return new String(readBytes(data, length), StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void toBytes(ByteBuf buffer, Object input) {
+                writeBytes(buffer, input.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+        });
+        final Server server = Server.builder(55847).serialization(serverSerializationProvider).lazyDecoding(true)
+                .build();
+        final RegisterSerializationProvider clientSerializationProvider = new RegisterSerializationProvider();
+        clientSerializationProvider.registerTransformer(new RegisterSerializationProvider.ByteBufTransformer<Object>() {
+            @Override
+            protected Object fromBytes(ByteBuf data, int length) {
+                return new String(readBytes(data, length), StandardCharsets.UTF_8);
+            }
+
+            @Override
+            protected void toBytes(ByteBuf buffer, Object input) {
+                writeBytes(buffer, input.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+        });
+        final Client client = Client.builder("localhost", 55847).serialization(clientSerializationProvider).build();
+        final Object[] received = new Object[2];
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                // Only the second packet is read completely.
+                if (value.getData().readInt() == 1) {
+                    received[0] = value.getData().read();
+                    received[1] = value.getData().read();
+                }
+            }
+        });
+        final Object object = new Object();
+        client.sendData(0, object, "test");
+        client.sendData(1, object, "test");
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        if (deserialized.get() != 1 || !object.toString().equals(received[0]) || !"test".equals(received[1])) {
+            throw new Error("Lazily decoded data wasn't received correctly! (deserialized: " + deserialized.get() +
+                    " | received: " + received[0] + ", " + received[1] + ')');
+        }
+    }
+
+    @Test(timeout = 15000L)
+    public void testLazyResend() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Server server = Server.builder(55863).lazyDecoding(true).listenerExecutor(executor).build();
+        final Client client = Client.builder("localhost", 55863).build();
+        final Object[] received = new Object[2];
+        server.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                // The container is sent again without reading its data.
+                value.getConnection().sendData(value.getData());
+            }
+        });
+        client.registerListener(new DecodeListener() {
+            @Override
+            public void trigger(DecodeEvent value) {
+                received[0] = value.getData().readInt();
+                received[1] = value.getData().read();
+            }
+        });
+        client.sendData(1, "lazy");
+        try {
+            Thread.sleep(1000L);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        server.stop();
+        client.stop();
+        executor.shutdown();
+        if (!Integer.valueOf(1).equals(received[0]) || !"lazy".equals(received[1])) {
+            throw new Error("Lazily decoded data wasn't sent again correctly! (received: " + received[0] + ", " +
+                    received[1] + ')');
+        }
+    }
+
 }